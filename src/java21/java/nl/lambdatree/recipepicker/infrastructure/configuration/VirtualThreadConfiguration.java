@@ -0,0 +1,26 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+/*
+ * Handle the requests on virtual threads instead of Tomcat's pool of platform threads, only compiled with the java21
+ * maven profile. A request blocked on jdbc then doesn't hold on to a platform thread, the ConcurrencyLimitFilter
+ * keeps the number of requests in progress at the size of the connection pool (see ConcurrencyLimitConfiguration).
+ */
+@Configuration
+@ConditionalOnProperty(name = "recipe-picker.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfiguration {
+
+   @Bean
+   public TomcatProtocolHandlerCustomizer<?> virtualThreadExecutor() {
+      log.info("Handling requests on virtual threads");
+      return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+   }
+}
@@ -0,0 +1,62 @@
+package nl.lambdatree.recipepicker.benchmark;
+
+import nl.lambdatree.recipepicker.RecipePickerApplication;
+import nl.lambdatree.recipepicker.domain.RecipeSearchEngine;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/*
+ * The application without a web server, on an in-memory database seeded with a synthetic catalogue.
+ * Set the size of the catalogue and the search engine with the JMH parameters, e.g. -p recipes=1000000.
+ * The schema version limits the flyway migrations, e.g. -p schema=1.1,latest compares the searches without and
+ * with the search indexes of V2.
+ */
+@State(Scope.Benchmark)
+public class CatalogueState {
+
+   @Param({"10000"})
+   public int recipes;
+
+   @Param({"2000"})
+   public int ingredients;
+
+   @Param({"jpql"})
+   public String engine;
+
+   @Param({"latest"})
+   public String schema;
+
+   ConfigurableApplicationContext context;
+
+   @Setup(Level.Trial)
+   public void start() {
+      context = new SpringApplicationBuilder(RecipePickerApplication.class)
+         .web(WebApplicationType.NONE)
+         .properties("spring.datasource.url=jdbc:h2:mem:benchmark",
+                     "recipe-picker.search.engine=" + engine,
+                     "spring.flyway.target=" + schema,
+                     "recipe-picker.search.result-cache-size=0",
+                     "logging.level.root=WARN")
+         .run();
+      new SyntheticCatalogue(recipes, ingredients, 42).insert(context.getBean(JdbcTemplate.class));
+      // The catalogue bypasses the RecipeService, so an index has to be rebuilt.
+      context.getBean(RecipeSearchEngine.class).rebuild();
+   }
+
+   @TearDown(Level.Trial)
+   public void stop() {
+      context.close();
+   }
+
+   <T> T getBean(Class<T> type) {
+      return context.getBean(type);
+   }
+}
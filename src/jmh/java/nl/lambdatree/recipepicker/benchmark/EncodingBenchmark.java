@@ -0,0 +1,83 @@
+package nl.lambdatree.recipepicker.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import nl.lambdatree.recipepicker.domain.Recipe;
+import nl.lambdatree.recipepicker.infrastructure.api.RecipeJsonSerializer;
+import nl.lambdatree.recipepicker.infrastructure.configuration.CompactEncodingConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Writing a page of search results as json or as the compact CBOR encoding, optionally gzip compressed like the
+ * server compression does, without a database. The payload size of the page is printed at the start of a run, the
+ * benchmark itself measures the cpu time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodingBenchmark {
+
+   @Param({"json", "cbor"})
+   public String format;
+
+   @Param({"none", "gzip"})
+   public String compression;
+
+   // The default page size of a search.
+   @Param({"100"})
+   public int pageSize;
+
+   private List<Recipe> page;
+   private ObjectMapper objectMapper;
+   private final ByteArrayOutputStream output = new ByteArrayOutputStream(256 * 1024);
+
+   @Setup
+   public void setup() throws Exception {
+      page = new SyntheticCatalogue(pageSize, 1000, 42).recipes();
+      // Configured like the object mappers of the application.
+      var builder = Jackson2ObjectMapperBuilder.json()
+                                               .modulesToInstall(new ParameterNamesModule())
+                                               .serializers(new RecipeJsonSerializer());
+      objectMapper = format.equals("cbor") ? CompactEncodingConfiguration.compactObjectMapper(builder) :
+         builder.build();
+      System.out.printf("%n%s, compression %s: %d bytes per page of %d recipes%n", format, compression, write(),
+                        pageSize);
+   }
+
+   @Benchmark
+   public int writePage() throws IOException {
+      return write();
+   }
+
+   private int write() throws IOException {
+      output.reset();
+      if (compression.equals("gzip")) {
+         try (var gzip = new GZIPOutputStream(output)) {
+            objectMapper.writeValue(gzip, page);
+         }
+      } else {
+         objectMapper.writeValue(output, page);
+      }
+      return output.size();
+   }
+}
@@ -0,0 +1,52 @@
+package nl.lambdatree.recipepicker.benchmark;
+
+import nl.lambdatree.recipepicker.domain.Recipe;
+import nl.lambdatree.recipepicker.domain.RecipeRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Fetching a single recipe by id, the ids are Zipf distributed like the popularity of real recipes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FetchBenchmark {
+
+   private RecipeRepository recipeRepository;
+   private TransactionTemplate transactionTemplate;
+   private ZipfDistribution popularity;
+   private final Random random = new Random(7);
+
+   @Setup
+   public void setup(CatalogueState catalogue) {
+      recipeRepository = catalogue.getBean(RecipeRepository.class);
+      transactionTemplate = catalogue.getBean(TransactionTemplate.class);
+      popularity = new ZipfDistribution(catalogue.recipes, 1.0);
+   }
+
+   @Benchmark
+   public Recipe fetchById() {
+      var id = SyntheticCatalogue.FIRST_ID + popularity.sample(random);
+      return transactionTemplate.execute(status -> {
+         var recipe = recipeRepository.findById(id).orElseThrow();
+         recipe.getIngredients().size();
+         return recipe;
+      });
+   }
+}
@@ -0,0 +1,124 @@
+package nl.lambdatree.recipepicker.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import nl.lambdatree.recipepicker.domain.Ingredient;
+import nl.lambdatree.recipepicker.domain.Recipe;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.infrastructure.api.RecipeJsonSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/*
+ * Mapping a recipe between the domain and the api, and serializing it to json, without a database.
+ *
+ * The page benchmarks compare writing a page of search results via the api recipes (the mapping the search used to do)
+ * with writing the domain recipes with the RecipeJsonSerializer, to a reused buffer like the response stream. Run them
+ * with "-prof gc" for the allocations per operation (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+   @Param({"200", "2048"})
+   public int instructionsLength;
+
+   @Param({"8"})
+   public int nofIngredients;
+
+   // The default page size of a search.
+   private static final int PAGE_SIZE = 100;
+
+   private Recipe domainRecipe;
+   private List<Recipe> domainPage;
+   private nl.lambdatree.recipepicker.infrastructure.api.Recipe apiRecipe;
+   private byte[] json;
+   private ObjectMapper objectMapper;
+   private final ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+
+   @Setup
+   public void setup() throws Exception {
+      domainRecipe = recipe(1L);
+      domainPage = LongStream.range(0, PAGE_SIZE)
+                             .mapToObj(this::recipe)
+                             .toList();
+      apiRecipe = nl.lambdatree.recipepicker.infrastructure.api.Recipe.fromDomain(domainRecipe);
+      // Configured like the object mapper of the application, which creates the api recipe through its constructor.
+      objectMapper = Jackson2ObjectMapperBuilder.json()
+                                                .modulesToInstall(new ParameterNamesModule())
+                                                .serializers(new RecipeJsonSerializer())
+                                                .build();
+      json = objectMapper.writeValueAsBytes(apiRecipe);
+   }
+
+   private Recipe recipe(long id) {
+      return Recipe.builder()
+                   .id(id)
+                   .name("Spaghetti Bolognese")
+                   .instructions("x".repeat(Math.min(instructionsLength, Recipe.INSTRUCTIONS_LENGTH)))
+                   .category(RecipeCategory.MEAT)
+                   .nofServings(4)
+                   .ingredients(LongStream.range(0, nofIngredients)
+                                          .mapToObj(ingredientId -> new Ingredient(ingredientId,
+                                                                                   "Ingredient " + ingredientId))
+                                          .collect(Collectors.toSet()))
+                   .build();
+   }
+
+   @Benchmark
+   public nl.lambdatree.recipepicker.infrastructure.api.Recipe fromDomain() {
+      return nl.lambdatree.recipepicker.infrastructure.api.Recipe.fromDomain(domainRecipe);
+   }
+
+   @Benchmark
+   public Recipe toDomain() {
+      return apiRecipe.toDomain();
+   }
+
+   @Benchmark
+   public byte[] serialize() throws Exception {
+      return objectMapper.writeValueAsBytes(apiRecipe);
+   }
+
+   @Benchmark
+   public nl.lambdatree.recipepicker.infrastructure.api.Recipe deserialize() throws Exception {
+      return objectMapper.readValue(json, nl.lambdatree.recipepicker.infrastructure.api.Recipe.class);
+   }
+
+   @Benchmark
+   public int serializePageOfApiRecipes() throws Exception {
+      output.reset();
+      var recipes = domainPage.stream()
+                              .map(nl.lambdatree.recipepicker.infrastructure.api.Recipe::fromDomain)
+                              .toList();
+      objectMapper.writeValue(output, recipes);
+      return output.size();
+   }
+
+   @Benchmark
+   public int serializePageOfDomainRecipes() throws Exception {
+      output.reset();
+      objectMapper.writeValue(output, domainPage);
+      return output.size();
+   }
+}
@@ -0,0 +1,82 @@
+package nl.lambdatree.recipepicker.benchmark;
+
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Load test of the API over http: many clients at the same time, each fetching a (Zipf distributed) recipe or
+ * searching (the summaries of) a category. Reports the throughput and the latency distribution, run it for both
+ * values of the threads parameter of ServerState to compare platform and virtual threads, or of the stack parameter
+ * to compare the servlet and reactive stacks. Set the number of clients with the JMH -t option.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(64)
+@Fork(1)
+public class RequestBenchmark {
+
+   private static final HttpClient client = HttpClient.newBuilder()
+                                                      .version(HttpClient.Version.HTTP_1_1)
+                                                      .build();
+
+   private ServerState server;
+   private ZipfDistribution popularity;
+   private final Random random = new Random();
+
+   @Setup
+   public void setup(ServerState server) {
+      this.server = server;
+      popularity = new ZipfDistribution(server.recipes, 1.0);
+   }
+
+   @Benchmark
+   public int fetchRecipe() throws IOException, InterruptedException {
+      return get(server.recipesPath + "/" + (SyntheticCatalogue.FIRST_ID + popularity.sample(random)));
+   }
+
+   @Benchmark
+   public int searchSummaries() throws IOException, InterruptedException {
+      return get(server.recipesPath + "/summaries?limit=20&recipeCategory=" + randomCategory().name());
+   }
+
+   @Benchmark
+   public int searchRecipes() throws IOException, InterruptedException {
+      return get(server.recipesPath + "?limit=20&recipeCategory=" + randomCategory().name());
+   }
+
+   private RecipeCategory randomCategory() {
+      return RecipeCategory.values()[1 + random.nextInt(RecipeCategory.values().length - 1)];
+   }
+
+   private int get(String path) throws IOException, InterruptedException {
+      var request = HttpRequest.newBuilder(server.baseUri.resolve(path))
+                               .header("Authorization", server.authorization)
+                               .header("Accept", "application/json")
+                               .build();
+      var status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+      if (status != 200) {
+         throw new IllegalStateException("Request " + path + " failed with " + status);
+      }
+      return status;
+   }
+}
@@ -0,0 +1,97 @@
+package nl.lambdatree.recipepicker.benchmark;
+
+import nl.lambdatree.recipepicker.domain.Ingredient;
+import nl.lambdatree.recipepicker.domain.Recipe;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.RecipePage;
+import nl.lambdatree.recipepicker.domain.RecipePageRequest;
+import nl.lambdatree.recipepicker.domain.RecipeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Searches with each combination of criteria, for a page of recipes including their ingredients.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+   public enum Criteria {
+      NONE, TEXT, CATEGORY, SERVINGS, INCLUDE, EXCLUDE, CATEGORY_SERVINGS, INCLUDE_EXCLUDE, ALL
+   }
+
+   @Param
+   public Criteria criteria;
+
+   @Param({"100"})
+   public int limit;
+
+   private RecipeService recipeService;
+   private TransactionTemplate transactionTemplate;
+
+   private String text = "";
+   private RecipeCategory category = RecipeCategory.ALL;
+   private int nofServings = 0;
+   private Set<Ingredient> include = Set.of();
+   private Set<Ingredient> exclude = Set.of();
+
+   @Setup
+   public void setup(CatalogueState catalogue) {
+      recipeService = catalogue.getBean(RecipeService.class);
+      transactionTemplate = catalogue.getBean(TransactionTemplate.class);
+
+      var all = criteria == Criteria.ALL;
+      if (all || criteria == Criteria.TEXT) {
+         text = "glaze";
+      }
+      if (all || criteria == Criteria.CATEGORY || criteria == Criteria.CATEGORY_SERVINGS) {
+         category = RecipeCategory.VEGETARIAN;
+      }
+      if (all || criteria == Criteria.SERVINGS || criteria == Criteria.CATEGORY_SERVINGS) {
+         nofServings = 4;
+      }
+      // The most popular ingredient, and one from the long tail.
+      if (all || criteria == Criteria.INCLUDE || criteria == Criteria.INCLUDE_EXCLUDE) {
+         include = Set.of(ingredient(0));
+      }
+      if (all || criteria == Criteria.EXCLUDE || criteria == Criteria.INCLUDE_EXCLUDE) {
+         exclude = Set.of(ingredient(500));
+      }
+   }
+
+   @Benchmark
+   public RecipePage<Recipe> search() {
+      var pageRequest = RecipePageRequest.builder()
+                                         .limit(limit)
+                                         .build();
+      // Like the controller, the ingredients are read in the transaction of the search.
+      return transactionTemplate.execute(status -> {
+         var page = recipeService.search(text, category, nofServings, include, exclude, pageRequest);
+         page.getRecipes().forEach(recipe -> recipe.getIngredients().size());
+         return page;
+      });
+   }
+
+   private static Ingredient ingredient(int rank) {
+      return Ingredient.builder()
+                       .id(SyntheticCatalogue.ingredientId(rank))
+                       .build();
+   }
+}
@@ -0,0 +1,78 @@
+package nl.lambdatree.recipepicker.benchmark;
+
+import nl.lambdatree.recipepicker.RecipePickerApplication;
+import nl.lambdatree.recipepicker.domain.RecipeSearchEngine;
+import nl.lambdatree.recipepicker.infrastructure.configuration.RecipePickerProperties;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/*
+ * The application with its web server on a free port, seeded with a synthetic catalogue like CatalogueState.
+ * The threads parameter selects Tomcat's platform threads or virtual threads, the latter needs Java 21 and the java21
+ * maven profile: mvn -P benchmark,java21 -DskipTests verify -Djmh.args="RequestBenchmark -p threads=platform,virtual"
+ * The stack parameter selects the servlet stack with the /v1 API, or the reactive stack with the /v2 API.
+ */
+@State(Scope.Benchmark)
+public class ServerState {
+
+   @Param({"10000"})
+   public int recipes;
+
+   @Param({"2000"})
+   public int ingredients;
+
+   @Param({"platform"})
+   public String threads;
+
+   @Param({"servlet"})
+   public String stack;
+
+   ConfigurableApplicationContext context;
+
+   URI baseUri;
+
+   // The path of the recipe API of the stack.
+   String recipesPath;
+
+   String authorization;
+
+   @Setup(Level.Trial)
+   public void start() {
+      var reactive = stack.equals("reactive");
+      context = new SpringApplicationBuilder(RecipePickerApplication.class)
+         .web(reactive ? WebApplicationType.REACTIVE : WebApplicationType.SERVLET)
+         .properties("server.port=0",
+                     "spring.datasource.url=jdbc:h2:mem:request-benchmark",
+                     "recipe-picker.reactive.url=r2dbc:h2:mem:///request-benchmark?options=LAZY_QUERY_EXECUTION=TRUE",
+                     "recipe-picker.virtual-threads.enabled=" + threads.equals("virtual"),
+                     "recipe-picker.search.result-cache-size=0",
+                     "logging.level.root=WARN")
+         .run();
+      new SyntheticCatalogue(recipes, ingredients, 42).insert(context.getBean(JdbcTemplate.class));
+      context.getBean(RecipeSearchEngine.class).rebuild();
+      var port = ((WebServerApplicationContext) context).getWebServer().getPort();
+      baseUri = URI.create("http://localhost:" + port);
+      recipesPath = reactive ? "/v2/recipes" : "/v1/recipes";
+      var properties = context.getBean(RecipePickerProperties.class);
+      authorization = "Basic " + Base64.getEncoder().encodeToString(
+         (properties.getUser() + ":" + properties.getPassword()).getBytes(StandardCharsets.ISO_8859_1));
+   }
+
+   @TearDown(Level.Trial)
+   public void stop() {
+      context.close();
+   }
+}
@@ -0,0 +1,119 @@
+package nl.lambdatree.recipepicker.benchmark;
+
+import nl.lambdatree.recipepicker.domain.Ingredient;
+import nl.lambdatree.recipepicker.domain.Recipe;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Seeds the database with a synthetic catalogue of recipes (or creates it in memory), using plain jdbc batches as that
+ * is a lot faster than saving entities. The ingredients per recipe are Zipf distributed, the instructions have a
+ * random length up to Recipe.INSTRUCTIONS_LENGTH. The same seed always gives the same catalogue.
+ */
+class SyntheticCatalogue {
+
+   // Ids start above the ids of the sample data.
+   static final long FIRST_ID = 1000;
+
+   private static final int BATCH_SIZE = 5000;
+   private static final String[] WORDS = {
+      "boil", "simmer", "stir", "chop", "slice", "fry", "bake", "roast", "glaze", "season", "whisk", "knead",
+      "salted", "water", "onions", "garlic", "sauce", "oven", "pan", "minutes", "until", "golden", "gently", "serve"
+   };
+
+   private final int nofRecipes;
+   private final int nofIngredients;
+   private final ZipfDistribution ingredientUsage;
+   private final Random random;
+
+   SyntheticCatalogue(int nofRecipes, int nofIngredients, long seed) {
+      this.nofRecipes = nofRecipes;
+      this.nofIngredients = nofIngredients;
+      this.ingredientUsage = new ZipfDistribution(nofIngredients, 1.0);
+      this.random = new Random(seed);
+   }
+
+   void insert(JdbcTemplate jdbcTemplate) {
+      var ingredients = new ArrayList<Object[]>(nofIngredients);
+      for (int i = 0; i < nofIngredients; i++) {
+         ingredients.add(new Object[]{ingredientId(i), ingredientName(i)});
+      }
+      jdbcTemplate.batchUpdate("insert into ingredients (id, name) values (?, ?)", ingredients);
+
+      var recipes = new ArrayList<Object[]>(BATCH_SIZE);
+      var recipeIngredients = new ArrayList<Object[]>(BATCH_SIZE * 8);
+      for (int r = 0; r < nofRecipes; r++) {
+         var recipe = nextRecipe(FIRST_ID + r);
+         recipes.add(new Object[]{recipe.getId(), recipe.getName(), recipe.getInstructions(),
+            recipe.getCategory().ordinal(), recipe.getNofServings()});
+         recipe.getIngredients()
+               .forEach(ingredient -> recipeIngredients.add(new Object[]{recipe.getId(), ingredient.getId()}));
+         if (recipes.size() == BATCH_SIZE || r == nofRecipes - 1) {
+            flush(jdbcTemplate, recipes, recipeIngredients);
+         }
+      }
+   }
+
+   // The recipes of the catalogue in memory, without a database.
+   List<Recipe> recipes() {
+      var recipes = new ArrayList<Recipe>(nofRecipes);
+      for (int r = 0; r < nofRecipes; r++) {
+         recipes.add(nextRecipe(FIRST_ID + r));
+      }
+      return recipes;
+   }
+
+   private Recipe nextRecipe(long id) {
+      var recipe = Recipe.builder()
+                         .id(id)
+                         .name(text(2, 6, 255))
+                         .instructions(text(10, 400, Recipe.INSTRUCTIONS_LENGTH))
+                         .category(RecipeCategory.values()[random.nextInt(RecipeCategory.values().length - 1) + 1])
+                         .nofServings(random.nextInt(Recipe.MAX_NOF_SERVINGS) + 1)
+                         .build();
+      var used = new HashSet<Ingredient>();
+      var nofUsed = 3 + random.nextInt(10);
+      while (used.size() < nofUsed) {
+         var rank = ingredientUsage.sample(random);
+         used.add(new Ingredient(ingredientId(rank), ingredientName(rank)));
+      }
+      recipe.setIngredients(used);
+      return recipe;
+   }
+
+   // The most used ingredient has rank 0.
+   static long ingredientId(int rank) {
+      return FIRST_ID + rank;
+   }
+
+   private static String ingredientName(int rank) {
+      return "Ingredient " + rank;
+   }
+
+   private static void flush(JdbcTemplate jdbcTemplate, List<Object[]> recipes, List<Object[]> recipeIngredients) {
+      jdbcTemplate.batchUpdate("insert into recipes (id, name, instructions, category, nof_servings) " +
+                                  "values (?, ?, ?, ?, ?)", recipes);
+      jdbcTemplate.batchUpdate("insert into recipe_ingredient (recipe, ingredient) values (?, ?)",
+                               recipeIngredients);
+      recipes.clear();
+      recipeIngredients.clear();
+   }
+
+   private String text(int minWords, int maxWords, int maxLength) {
+      var nofWords = minWords + random.nextInt(maxWords - minWords + 1);
+      var text = new StringBuilder();
+      for (int w = 0; w < nofWords; w++) {
+         var word = WORDS[random.nextInt(WORDS.length)];
+         if (text.length() + word.length() + 1 > maxLength) {
+            break;
+         }
+         text.append(w == 0 ? "" : " ").append(word);
+      }
+      return text.toString();
+   }
+}
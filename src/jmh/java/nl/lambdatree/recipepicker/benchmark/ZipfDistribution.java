@@ -0,0 +1,30 @@
+package nl.lambdatree.recipepicker.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Samples ranks 0 .. n - 1 where the probability of rank k is proportional to 1 / (k + 1)^exponent, so a few
+ * ingredients (or recipes) are used far more often than the rest.
+ */
+class ZipfDistribution {
+
+   private final double[] cumulative;
+
+   ZipfDistribution(int n, double exponent) {
+      cumulative = new double[n];
+      var sum = 0.0;
+      for (int k = 0; k < n; k++) {
+         sum += 1.0 / Math.pow(k + 1, exponent);
+         cumulative[k] = sum;
+      }
+      for (int k = 0; k < n; k++) {
+         cumulative[k] /= sum;
+      }
+   }
+
+   int sample(Random random) {
+      var index = Arrays.binarySearch(cumulative, random.nextDouble());
+      return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+   }
+}
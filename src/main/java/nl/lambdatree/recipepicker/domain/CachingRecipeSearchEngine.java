@@ -0,0 +1,158 @@
+package nl.lambdatree.recipepicker.domain;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/*
+ * Search engine which caches the ids of the recipes found by another search engine, keyed by the normalized criteria
+ * and the page request. Only the recipes themselves are loaded for a cached search.
+ *
+ * A change of a recipe invalidates the cached searches which contain the recipe or whose criteria match its new
+ * state, all other searches stay cached. To never cache a result computed from the state before a change, every
+ * change increments a version: once when it is published and again when its transaction completes. A result is only
+ * cached if the version didn't change while it was searched.
+ *
+ * Only the changes published in this process invalidate the cache, changes by other instances or bypassing the
+ * RecipeService are picked up when the cached searches expire after their time to live.
+ *
+ * Summaries and scrolling are passed on to the other search engine.
+ */
+public class CachingRecipeSearchEngine implements RecipeSearchEngine {
+
+   private final RecipeSearchEngine delegate;
+   private final RecipeRepository recipeRepository;
+   private final Cache<Key, Entry> cache;
+
+   // Guards the version together with the cache contents.
+   private final Object lock = new Object();
+   private long version;
+
+   // The criteria in canonical form: case-insensitive text and sorted ingredient ids.
+   private record Key(String text, TextMode textMode, RecipeCategory category, int nofServings,
+                      List<Long> includeIngredientIds, List<Long> excludeIngredientIds,
+                      RecipePageRequest pageRequest) {
+
+      static Key of(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+         return new Key(criteria.getText().toLowerCase(Locale.ROOT),
+                        criteria.getTextMode(),
+                        criteria.getCategory(),
+                        criteria.getNofServings(),
+                        sorted(criteria.getIncludeIngredientIds()),
+                        sorted(criteria.getExcludeIngredientIds()),
+                        pageRequest);
+      }
+
+      private static List<Long> sorted(Set<Long> ids) {
+         return ids.stream().sorted().toList();
+      }
+   }
+
+   // The ids found, including the one after the page which signals a next page.
+   private record Entry(RecipeSearchCriteria criteria, List<Long> ids) {
+
+      boolean isAffectedBy(RecipeChangedEvent event) {
+         return ids.contains(event.getRecipeId())
+            || (event.getRecipe() != null && criteria.matches(event.getRecipe()));
+      }
+   }
+
+   public CachingRecipeSearchEngine(RecipeSearchEngine delegate, RecipeRepository recipeRepository, int maximumSize,
+                                    Duration timeToLive) {
+      this.delegate = delegate;
+      this.recipeRepository = recipeRepository;
+      this.cache = Caffeine.newBuilder()
+                           .maximumSize(maximumSize)
+                           .expireAfterWrite(timeToLive)
+                           .build();
+   }
+
+   @Override
+   public RecipePage<Recipe> search(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      var key = Key.of(criteria, pageRequest);
+      var entry = cache.getIfPresent(key);
+      if (entry == null) {
+         long searchedVersion;
+         synchronized (lock) {
+            searchedVersion = version;
+         }
+         // The summaries don't load the ingredients, ask for one more to get the recipe after the page.
+         var summaries = delegate.searchSummaries(criteria, withLookahead(pageRequest));
+         entry = new Entry(criteria, summaries.getRecipes()
+                                              .stream()
+                                              .map(RecipeSummary::getId)
+                                              .toList());
+         synchronized (lock) {
+            if (version == searchedVersion) {
+               cache.put(key, entry);
+            }
+         }
+      }
+      return RecipePage.of(RecipeLoading.loadInOrder(recipeRepository, entry.ids()), pageRequest, RecipeSummary::of);
+   }
+
+   @Override
+   public RecipePage<RecipeSummary> searchSummaries(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      return delegate.searchSummaries(criteria, pageRequest);
+   }
+
+   @Override
+   public void scroll(RecipeSearchCriteria criteria, Consumer<Recipe> consumer) {
+      delegate.scroll(criteria, consumer);
+   }
+
+   @Override
+   public void rebuild() {
+      synchronized (lock) {
+         version++;
+         cache.invalidateAll();
+      }
+      delegate.rebuild();
+   }
+
+   // A search running while the change is not committed yet may or may not see it, don't cache its result.
+   @EventListener
+   public void onRecipeChanging(RecipeChangedEvent event) {
+      synchronized (lock) {
+         version++;
+      }
+   }
+
+   @Override
+   @TransactionalEventListener(fallbackExecution = true)
+   public void onRecipeChanged(RecipeChangedEvent event) {
+      // Update any index of the other search engine first, so a new result is never computed from an old index.
+      delegate.onRecipeChanged(event);
+      invalidate(event);
+   }
+
+   // Results computed inside the transaction may have included the change.
+   @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+   public void onRecipeChangeRolledBack(RecipeChangedEvent event) {
+      invalidate(event);
+   }
+
+   private void invalidate(RecipeChangedEvent event) {
+      synchronized (lock) {
+         version++;
+         cache.asMap().values().removeIf(entry -> entry.isAffectedBy(event));
+      }
+   }
+
+   private static RecipePageRequest withLookahead(RecipePageRequest pageRequest) {
+      if (pageRequest.getLimit() == Integer.MAX_VALUE) {
+         return pageRequest;
+      }
+      return pageRequest.toBuilder()
+                        .limit(pageRequest.getLimit() + 1)
+                        .build();
+   }
+}
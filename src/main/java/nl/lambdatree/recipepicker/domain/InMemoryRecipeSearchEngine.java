@@ -0,0 +1,434 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.persistence.EntityManager;
+import javax.validation.ValidationException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/*
+ * Search engine which keeps an index of all recipes in memory, only the matching recipes are loaded from the database.
+ *
+ * Every recipe is assigned a dense ordinal, each criterion is evaluated as a compressed (roaring) bitmap of ordinals:
+ * - an inverted index of the lower-cased terms in the name and instructions, for a substring search,
+ * - an inverted index of the stems in the name and instructions (see TextAnalyzer), for a full-text search,
+ * - a posting list of the recipes using each ingredient,
+ * - a bitmap per category and per number of servings.
+ * The criteria which must all hold (category, servings, included ingredients and text) are combined with an "and",
+ * the excluded ingredients are combined with an "or" and removed from the result with an "and not".
+ *
+ * The index is kept in sync using the RecipeChangedEvents of the RecipeService, after the transaction commits.
+ * Changes which bypass the RecipeService are only picked up by a rebuild(). The listeners of concurrent commits can
+ * run in a different order than the commits, so a change older than the indexed version of its recipe is ignored.
+ * The versions of deleted recipes are kept as tombstones, so a late update can't bring a deleted recipe back.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class InMemoryRecipeSearchEngine implements RecipeSearchEngine {
+
+   private static final Pattern TERM_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+   private static final Pattern SINGLE_TERM = Pattern.compile("[\\p{L}\\p{N}]+");
+   private static final int REBUILD_PAGE_SIZE = 1000;
+   private static final int SCROLL_PAGE_SIZE = 500;
+   private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+   private final EntityManager entityManager;
+   private final RecipeRepository recipeRepository;
+
+   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+   // The indexed recipes by ordinal, the ordinals of removed recipes are reused.
+   private final List<Document> documents = new ArrayList<>();
+   private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+   private final RoaringBitmap live = new RoaringBitmap();
+   private final Map<Long, Integer> ordinals = new HashMap<>();
+
+   private final Map<String, RoaringBitmap> terms = new HashMap<>();
+   private final Map<String, RoaringBitmap> stems = new HashMap<>();
+   private final Map<Long, RoaringBitmap> ingredients = new HashMap<>();
+   private final Map<RecipeCategory, RoaringBitmap> categories = new EnumMap<>(RecipeCategory.class);
+   private final Map<Integer, RoaringBitmap> servings = new HashMap<>();
+
+   // The versions of the recipes which aren't indexed: the deleted ones, as tombstones, and the ones without
+   // ingredients.
+   private final Map<Long, RecipeVersion> unindexed = new HashMap<>();
+
+   // The indexed attributes of a recipe, needed to remove it from the index again.
+   private record Document(long id, long version, String name, RecipeCategory category, int nofServings,
+                           Set<String> terms, Map<String, Integer> stemWeights, Set<Long> ingredientIds) {
+
+      // The relevance for a full-text search, with the same definition as the database search.
+      int score(Set<String> queryStems) {
+         return queryStems.stream()
+                          .mapToInt(stem -> stemWeights.getOrDefault(stem, 0))
+                          .sum();
+      }
+   }
+
+   @Override
+   public RecipePage<Recipe> search(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      // Fetch one extra recipe to find out if there is a next page.
+      var wanted = wanted(pageRequest);
+
+      // A single term is matched exactly by the index, other texts (containing spaces, punctuation etc.) only narrow
+      // down the candidates, check those against the full name and instructions until the page is full.
+      if (needsVerification(criteria)) {
+         var found = new ArrayList<Recipe>();
+         List<Document> candidates = List.of();
+         do {
+            var last = candidates.isEmpty() ? null : candidates.get(candidates.size() - 1);
+            candidates = matching(criteria, pageRequest, wanted, last);
+            RecipeLoading.loadInOrder(recipeRepository, ids(candidates))
+                         .stream()
+                         .filter(criteria::matchesText)
+                         .limit(wanted - found.size())
+                         .forEach(found::add);
+         } while (found.size() < wanted && candidates.size() == wanted);
+         return RecipePage.of(found, pageRequest, RecipeSummary::of);
+      }
+      var ids = ids(matching(criteria, pageRequest, wanted, null));
+      return RecipePage.of(RecipeLoading.loadInOrder(recipeRepository, ids), pageRequest, RecipeSummary::of);
+   }
+
+   @Override
+   public RecipePage<RecipeSummary> searchSummaries(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      // Texts which aren't a single term need the instructions of the candidates.
+      if (needsVerification(criteria)) {
+         var page = search(criteria, pageRequest);
+         return new RecipePage<>(page.getRecipes().stream().map(RecipeSummary::of).toList(), page.getNext());
+      }
+      // Otherwise the summaries are created from the index, without touching the database.
+      var documents = matching(criteria, pageRequest, wanted(pageRequest), null);
+      var summaries = documents.stream()
+                               .map(document -> new RecipeSummary(document.id(), document.name(),
+                                                                  document.category(), document.nofServings()))
+                               .toList();
+      return RecipePage.of(summaries, pageRequest, summary -> summary);
+   }
+
+   // The stems are matched exactly by the index, so only a substring search can need the full text.
+   private static boolean needsVerification(RecipeSearchCriteria criteria) {
+      return criteria.hasText() && criteria.getTextMode() == TextMode.SUBSTRING && !isSingleTerm(criteria.getText());
+   }
+
+   // The first limit documents matching the criteria and positioned after the cursor (and after the given document),
+   // in the sort order of the page request. Only the best limit documents seen so far are kept in a heap, so a page
+   // takes O(matches * log(limit)) comparisons instead of sorting all the matches.
+   private List<Document> matching(RecipeSearchCriteria criteria, RecipePageRequest pageRequest, int limit,
+                                   @Nullable Document from) {
+      var comparator = pageRequest.isByRelevance() ? relevance(criteria) : comparator(pageRequest.getSort());
+      var after = pageRequest.getAfter();
+      lock.readLock().lock();
+      try {
+         var required = new ArrayList<RoaringBitmap>();
+         if (criteria.hasCategory()) {
+            required.add(categories.getOrDefault(criteria.getCategory(), EMPTY));
+         }
+         if (criteria.hasNofServings()) {
+            required.add(servings.getOrDefault(criteria.getNofServings(), EMPTY));
+         }
+         criteria.getIncludeIngredientIds()
+                 .forEach(id -> required.add(ingredients.getOrDefault(id, EMPTY)));
+         if (criteria.hasText() && criteria.getTextMode() == TextMode.FULL_TEXT) {
+            // Every word should match one of its stems.
+            criteria.getTextStems().forEach(alternatives -> required.add(withAnyStem(alternatives)));
+         } else if (criteria.hasText()) {
+            tokenize(criteria.getText()).forEach(token -> required.add(containing(token)));
+         }
+         // Every indexed ordinal is in "live", so it is only needed if there are no other criteria.
+         var matches = required.isEmpty() ? live.clone() : FastAggregation.and(required.iterator());
+
+         if (!criteria.getExcludeIngredientIds().isEmpty()) {
+            var excluded = criteria.getExcludeIngredientIds()
+                                   .stream()
+                                   .map(id -> ingredients.getOrDefault(id, EMPTY))
+                                   .iterator();
+            matches.andNot(FastAggregation.or(excluded));
+         }
+
+         var candidates = matches.stream()
+                                 .mapToObj(documents::get)
+                                 .filter(document -> after == null || isAfter(document, after, pageRequest.getSort()))
+                                 .filter(document -> from == null || comparator.compare(document, from) > 0);
+         if (limit >= matches.getCardinality()) {
+            return candidates.sorted(comparator).toList();
+         }
+         // The head of the heap is the worst of the best documents, replaced by a better one.
+         var best = new PriorityQueue<Document>(limit, comparator.reversed());
+         candidates.forEach(document -> {
+            if (best.size() < limit) {
+               best.add(document);
+            } else if (comparator.compare(document, best.peek()) < 0) {
+               best.poll();
+               best.add(document);
+            }
+         });
+         var page = new ArrayList<>(best);
+         page.sort(comparator);
+         return page;
+      } finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   private static int wanted(RecipePageRequest pageRequest) {
+      return pageRequest.getLimit() == Integer.MAX_VALUE ? Integer.MAX_VALUE : pageRequest.getLimit() + 1;
+   }
+
+   private static List<Long> ids(List<Document> documents) {
+      return documents.stream()
+                      .map(Document::id)
+                      .toList();
+   }
+
+   @Override
+   public void scroll(RecipeSearchCriteria criteria, Consumer<Recipe> consumer) {
+      var pageRequest = RecipePageRequest.builder()
+                                         .limit(SCROLL_PAGE_SIZE)
+                                         .build();
+      do {
+         var page = search(criteria, pageRequest);
+         page.getRecipes().forEach(consumer);
+         entityManager.clear(); // Detach the recipes of this page.
+         pageRequest = page.getNext() == null ? null : pageRequest.toBuilder().after(page.getNext()).build();
+      } while (pageRequest != null);
+   }
+
+   // Descending relevance, the most relevant documents first.
+   private static Comparator<Document> relevance(RecipeSearchCriteria criteria) {
+      if (!criteria.hasText() || criteria.getTextMode() != TextMode.FULL_TEXT) {
+         throw new ValidationException("Ordering by relevance needs a full-text search");
+      }
+      var queryStems = criteria.getTextStems()
+                               .stream()
+                               .flatMap(Set::stream)
+                               .collect(Collectors.toSet());
+      return Comparator.<Document>comparingInt(document -> document.score(queryStems))
+                       .reversed()
+                       .thenComparingLong(Document::id);
+   }
+
+   private static Comparator<Document> comparator(List<RecipeSortOrder> sort) {
+      Comparator<Document> comparator = (a, b) -> 0;
+      for (var order : sort) {
+         Comparator<Document> byKey = (a, b) -> compare(value(a, order.getKey()), value(b, order.getKey()));
+         comparator = comparator.thenComparing(order.isAscending() ? byKey : byKey.reversed());
+      }
+      return comparator.thenComparingLong(Document::id);
+   }
+
+   // Is the document positioned after the cursor in the sort order?
+   private static boolean isAfter(Document document, RecipeCursor cursor, List<RecipeSortOrder> sort) {
+      for (int i = 0; i < sort.size(); i++) {
+         var order = sort.get(i);
+         var result = compare(value(document, order.getKey()), cursor.getValues().get(i));
+         if (result != 0) {
+            return order.isAscending() ? result > 0 : result < 0;
+         }
+      }
+      return document.id() > cursor.getId();
+   }
+
+   private static Comparable<?> value(Document document, RecipeSortKey key) {
+      return switch (key) {
+         case NAME -> document.name();
+         case CATEGORY -> document.category();
+         case NOF_SERVINGS -> document.nofServings();
+      };
+   }
+
+   @SuppressWarnings({"unchecked", "rawtypes"})
+   private static int compare(Comparable a, Comparable b) {
+      return a.compareTo(b);
+   }
+
+   @Override
+   public void rebuild() {
+      lock.writeLock().lock();
+      try {
+         documents.clear();
+         freeOrdinals.clear();
+         live.clear();
+         ordinals.clear();
+         terms.clear();
+         stems.clear();
+         ingredients.clear();
+         categories.clear();
+         servings.clear();
+         unindexed.clear();
+
+         // Page through the recipes by id, so only a page of instructions is in memory at a time.
+         var lastId = Long.MIN_VALUE;
+         List<Object[]> page;
+         do {
+            page = entityManager.createQuery(
+                                   "select r.id, r.version, r.name, r.instructions, r.category, r.nofServings " +
+                                      "from recipes r where r.id > :lastId order by r.id", Object[].class)
+                                .setParameter("lastId", lastId)
+                                .setMaxResults(REBUILD_PAGE_SIZE)
+                                .getResultList();
+            if (!page.isEmpty()) {
+               var recipeIds = page.stream().map(row -> (Long) row[0]).toList();
+               var ingredientIds = RecipeLoading.loadIngredientIds(entityManager, recipeIds);
+               for (var row : page) {
+                  var id = (Long) row[0];
+                  add(id, (Long) row[1], (String) row[2], (String) row[3], (RecipeCategory) row[4],
+                      (Integer) row[5], ingredientIds.getOrDefault(id, Set.of()));
+               }
+               lastId = (Long) page.get(page.size() - 1)[0];
+            }
+         } while (page.size() == REBUILD_PAGE_SIZE);
+
+         // Switch to run length encoding where that is smaller, e.g. for the category bitmaps.
+         live.runOptimize();
+         terms.values().forEach(RoaringBitmap::runOptimize);
+         stems.values().forEach(RoaringBitmap::runOptimize);
+         ingredients.values().forEach(RoaringBitmap::runOptimize);
+         categories.values().forEach(RoaringBitmap::runOptimize);
+         servings.values().forEach(RoaringBitmap::runOptimize);
+
+         log.info("Indexed {} recipes with {} distinct terms, the ingredient index uses {} bytes",
+                  ordinals.size(), terms.size(), getIngredientIndexSizeInBytes());
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   @Override
+   @TransactionalEventListener(fallbackExecution = true)
+   public void onRecipeChanged(RecipeChangedEvent event) {
+      var id = event.getRecipeId();
+      lock.writeLock().lock();
+      try {
+         var ordinal = ordinals.get(id);
+         var known = ordinal != null ? new RecipeVersion(documents.get(ordinal).version(), false) : unindexed.get(id);
+         if (known != null && known.supersedes(event)) {
+            log.debug("Ignoring version {} of recipe {}, already at {}", event.getVersion(), id, known);
+            return;
+         }
+         remove(id);
+         var recipe = event.getRecipe();
+         if (recipe != null) {
+            var ingredientIds = recipe.getIngredients()
+                                      .stream()
+                                      .map(Ingredient::getId)
+                                      .collect(Collectors.toSet());
+            add(id, event.getVersion(), recipe.getName(), recipe.getInstructions(), recipe.getCategory(),
+                recipe.getNofServings(), ingredientIds);
+         } else {
+            unindexed.put(id, RecipeVersion.of(event));
+         }
+      } finally {
+         lock.writeLock().unlock();
+      }
+   }
+
+   // Must be called with the write lock held.
+   private void add(long id, long version, String name, String instructions, RecipeCategory category,
+                    int nofServings, Set<Long> ingredientIds) {
+      // Recipes without ingredients are never found by the database search either.
+      if (ingredientIds.isEmpty()) {
+         unindexed.put(id, new RecipeVersion(version, false));
+         return;
+      }
+      unindexed.remove(id);
+      var documentTerms = new HashSet<String>();
+      documentTerms.addAll(tokenize(name));
+      documentTerms.addAll(tokenize(instructions));
+      var stemWeights = Map.copyOf(TextAnalyzer.weights(name, instructions));
+      var document = new Document(id, version, name, category, nofServings, documentTerms, stemWeights,
+                                  Set.copyOf(ingredientIds));
+
+      int ordinal;
+      if (freeOrdinals.isEmpty()) {
+         ordinal = documents.size();
+         documents.add(document);
+      } else {
+         ordinal = freeOrdinals.pop();
+         documents.set(ordinal, document);
+      }
+      live.add(ordinal);
+      ordinals.put(id, ordinal);
+
+      documentTerms.forEach(term -> terms.computeIfAbsent(term, t -> new RoaringBitmap()).add(ordinal));
+      stemWeights.keySet().forEach(stem -> stems.computeIfAbsent(stem, t -> new RoaringBitmap()).add(ordinal));
+      ingredientIds.forEach(ingredientId -> ingredients.computeIfAbsent(ingredientId, i -> new RoaringBitmap()).add(ordinal));
+      categories.computeIfAbsent(category, c -> new RoaringBitmap()).add(ordinal);
+      servings.computeIfAbsent(nofServings, s -> new RoaringBitmap()).add(ordinal);
+   }
+
+   // Must be called with the write lock held.
+   private void remove(long id) {
+      var ordinal = ordinals.remove(id);
+      if (ordinal == null) {
+         return;
+      }
+      var document = documents.get(ordinal);
+      document.terms().forEach(term -> clear(terms, term, ordinal));
+      document.stemWeights().keySet().forEach(stem -> clear(stems, stem, ordinal));
+      document.ingredientIds().forEach(ingredientId -> clear(ingredients, ingredientId, ordinal));
+      clear(categories, document.category(), ordinal);
+      clear(servings, document.nofServings(), ordinal);
+      documents.set(ordinal, null);
+      live.remove(ordinal);
+      freeOrdinals.push(ordinal);
+   }
+
+   private static <K> void clear(Map<K, RoaringBitmap> postings, K key, int ordinal) {
+      var bitmap = postings.get(key);
+      bitmap.remove(ordinal);
+      if (bitmap.isEmpty()) {
+         postings.remove(key);
+      }
+   }
+
+   // All documents with a term containing the token, a substring search over the dictionary.
+   private RoaringBitmap containing(String token) {
+      var matching = terms.entrySet()
+                          .stream()
+                          .filter(entry -> entry.getKey().contains(token))
+                          .map(Map.Entry::getValue)
+                          .iterator();
+      return FastAggregation.or(matching);
+   }
+
+   // All documents with one of the stems.
+   private RoaringBitmap withAnyStem(Set<String> alternatives) {
+      return FastAggregation.or(alternatives.stream()
+                                            .map(stem -> stems.getOrDefault(stem, EMPTY))
+                                            .iterator());
+   }
+
+   // The memory used by the ingredient posting lists, for checking the memory budget.
+   public long getIngredientIndexSizeInBytes() {
+      lock.readLock().lock();
+      try {
+         return ingredients.values()
+                           .stream()
+                           .mapToLong(RoaringBitmap::getLongSizeInBytes)
+                           .sum();
+      } finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   private static List<String> tokenize(String text) {
+      return TERM_SEPARATOR.splitAsStream(text.toLowerCase(Locale.ROOT))
+                           .filter(token -> !token.isEmpty())
+                           .toList();
+   }
+
+   private static boolean isSingleTerm(String text) {
+      return SINGLE_TERM.matcher(text).matches();
+   }
+}
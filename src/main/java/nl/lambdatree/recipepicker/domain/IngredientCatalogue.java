@@ -0,0 +1,187 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import javax.validation.ValidationException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/*
+ * In-process catalogue of all ingredients, as these are read constantly but change rarely.
+ *
+ * Readers get an immutable snapshot of the ingredients. Every change of an ingredient (through the
+ * ChangeListener on the entity) increments the generation, a snapshot of an older generation is reloaded on the next
+ * read. The generation is incremented again when the transaction of the change completes, so a snapshot loaded
+ * before the change was committed is never kept.
+ *
+ * The listener only sees the changes of this instance. Ingredients changed by another instance, a migration or plain
+ * sql are seen when the snapshot is reloaded after its maximum age.
+ */
+@Component
+@Slf4j
+public class IngredientCatalogue {
+
+   private final IngredientRepository ingredientRepository;
+   private final Duration maxAge;
+
+   private final AtomicLong generation = new AtomicLong();
+   private volatile Snapshot snapshot;
+
+   public IngredientCatalogue(
+      IngredientRepository ingredientRepository,
+      @org.springframework.beans.factory.annotation.Value("${recipe-picker.ingredient-catalogue.max-age:1m}")
+      Duration maxAge) {
+      this.ingredientRepository = ingredientRepository;
+      this.maxAge = maxAge;
+   }
+
+   /*
+    * The ingredients at a point in time, ordered by id. The ETag is a hash of the contents, so it stays the same
+    * if a reload results in the same ingredients.
+    */
+   @Value
+   public static class Snapshot {
+      long generation;
+      long loadedAt; // System.nanoTime()
+      List<Ingredient> ingredients;
+      Map<Long, Ingredient> byId;
+      Map<String, Ingredient> byName;
+      String eTag;
+
+      static Snapshot of(long generation, Iterable<Ingredient> found) {
+         // Copy the ingredients, so the snapshot doesn't share (mutable) entities with a persistence context.
+         var ingredients = StreamSupport.stream(found.spliterator(), false)
+                                        .map(i -> new Ingredient(i.getId(), i.getName()))
+                                        .sorted(Comparator.comparing(Ingredient::getId))
+                                        .toList();
+         return new Snapshot(generation,
+                             System.nanoTime(),
+                             ingredients,
+                             index(ingredients, Ingredient::getId),
+                             index(ingredients, Ingredient::getName),
+                             hash(ingredients));
+      }
+
+      public Optional<Ingredient> findById(long id) {
+         return Optional.ofNullable(byId.get(id));
+      }
+
+      public Optional<Ingredient> findByName(String name) {
+         return Optional.ofNullable(byName.get(name));
+      }
+
+      // Resolve the ids to ingredients, throws a ValidationException for an unknown id.
+      public Set<Ingredient> resolve(Collection<Long> ids) {
+         return ids.stream()
+                   .map(id -> findById(id).orElseThrow(() -> new ValidationException(
+                      String.format("Unknown ingredient id %d", id))))
+                   .collect(Collectors.toUnmodifiableSet());
+      }
+
+      private static <K> Map<K, Ingredient> index(List<Ingredient> ingredients, Function<Ingredient, K> key) {
+         return ingredients.stream()
+                           .collect(Collectors.toMap(key, i -> i, (a, b) -> a, LinkedHashMap::new));
+      }
+
+      private static String hash(List<Ingredient> ingredients) {
+         try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            ingredients.forEach(i -> digest.update((i.getId() + ":" + i.getName() + "\n")
+                                                      .getBytes(StandardCharsets.UTF_8)));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+         } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+         }
+      }
+   }
+
+   public Snapshot getSnapshot() {
+      var current = snapshot;
+      if (isCurrent(current, generation.get())) {
+         return current;
+      }
+      return reload();
+   }
+
+   public Ingredient getById(long id) {
+      return getSnapshot().findById(id)
+                          .orElseThrow(() -> new NoSuchElementException(String.format("No ingredient with id %d", id)));
+   }
+
+   // Only one thread reloads, the others wait for its result.
+   private synchronized Snapshot reload() {
+      var current = snapshot;
+      var loadedGeneration = generation.get();
+      if (isCurrent(current, loadedGeneration)) {
+         return current;
+      }
+      current = Snapshot.of(loadedGeneration, ingredientRepository.findAll());
+      snapshot = current;
+      log.info("Loaded {} ingredients into the catalogue (generation {})", current.getIngredients().size(),
+               loadedGeneration);
+      return current;
+   }
+
+   private boolean isCurrent(@Nullable Snapshot snapshot, long currentGeneration) {
+      return snapshot != null && snapshot.getGeneration() == currentGeneration &&
+         System.nanoTime() - snapshot.getLoadedAt() < maxAge.toNanos();
+   }
+
+   // Not private, the lazy proxy in the ChangeListener can't delegate private methods.
+   void invalidate() {
+      generation.incrementAndGet();
+      if (TransactionSynchronizationManager.isSynchronizationActive()) {
+         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+               generation.incrementAndGet();
+            }
+         });
+      }
+   }
+
+   /*
+    * Entity listener which invalidates the catalogue on every change of an ingredient, including changes which
+    * bypass this catalogue. Instantiated by Hibernate through the Spring bean container.
+    */
+   public static class ChangeListener {
+
+      private final IngredientCatalogue catalogue;
+
+      // Lazy, the catalogue needs the repository which isn't available yet while the entity manager is created.
+      public ChangeListener(@Lazy IngredientCatalogue catalogue) {
+         this.catalogue = catalogue;
+      }
+
+      @PostPersist
+      @PostUpdate
+      @PostRemove
+      public void onChange(Ingredient ingredient) {
+         catalogue.invalidate();
+      }
+   }
+}
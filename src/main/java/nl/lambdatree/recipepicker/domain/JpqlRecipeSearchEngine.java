@@ -0,0 +1,293 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.validation.ValidationException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * Search engine which translates the criteria into a JPQL query on the database, the default.
+ *
+ * A full-text search uses the recipe_terms index maintained by the Recipe entity, a substring search can't use an
+ * index and uses "like" on the name and instructions.
+ *
+ * Recipes are searched in two steps: a query for the ids of the matching recipes, followed by a query which fetches
+ * those recipes together with their ingredients. The number of statements doesn't depend on the number of results.
+ *
+ * The JPQL of a query only depends on its shape: which criteria are present, the number of words (padded to a power
+ * of two) and the sort order, never on the values which are bound as parameters. This keeps the number of distinct
+ * queries, and so the entries of Hibernate's query plan cache, small. The common shapes are compiled by rebuild().
+ */
+@RequiredArgsConstructor
+public class JpqlRecipeSearchEngine implements RecipeSearchEngine {
+
+   // Number of recipes between clearing the persistence context while scrolling.
+   private static final int SCROLL_BATCH_SIZE = 500;
+
+   private static final String FETCH_WITH_INGREDIENTS =
+      "select distinct r from recipes r left join fetch r.ingredients where r.id in :ids";
+
+   private final EntityManager entityManager;
+
+   // The JPQL for each query shape, built once.
+   private final Map<Object, String> queries = new ConcurrentHashMap<>();
+
+   // Compile the queries of the default order for every combination of criteria, so the first searches don't have to.
+   @Override
+   public void rebuild() {
+      var select = List.of("r.id", summarySelect());
+      for (var text : new TextMode[]{null, TextMode.SUBSTRING, TextMode.FULL_TEXT}) {
+         for (int combination = 0; combination < 16; combination++) {
+            var where = new WhereShape(text, text == TextMode.FULL_TEXT ? 1 : 0, (combination & 1) != 0,
+                                       (combination & 2) != 0, (combination & 4) != 0, (combination & 8) != 0);
+            select.forEach(columns -> entityManager.createQuery(
+               queryFor(new QueryShape(columns, where, RecipePageRequest.DEFAULT_SORT, false))));
+         }
+      }
+      entityManager.createQuery(FETCH_WITH_INGREDIENTS);
+      entityManager.createQuery(fetchSummariesQuery());
+   }
+
+   @Override
+   public RecipePage<Recipe> search(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      return RecipePage.of(fetchWithIngredients(findIds(criteria, pageRequest)), pageRequest, RecipeSummary::of);
+   }
+
+   @Override
+   public RecipePage<RecipeSummary> searchSummaries(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      if (pageRequest.isByRelevance()) {
+         return RecipePage.of(fetchSummaries(findIds(criteria, pageRequest)), pageRequest, summary -> summary);
+      }
+      var summaries = limit(createQuery(summarySelect(), RecipeSummary.class, criteria, pageRequest), pageRequest);
+      return RecipePage.of(summaries.getResultList(), pageRequest, summary -> summary);
+   }
+
+   private List<Long> findIds(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      var query = pageRequest.isByRelevance() ?
+         createRelevanceQuery(criteria) : createQuery("r.id", Long.class, criteria, pageRequest);
+      return limit(query, pageRequest).getResultList();
+   }
+
+   @Override
+   public void scroll(RecipeSearchCriteria criteria, Consumer<Recipe> consumer) {
+      var query = createQuery("r.id", Long.class, criteria, RecipePageRequest.unlimited())
+         .setHint(QueryHints.HINT_FETCH_SIZE, SCROLL_BATCH_SIZE);
+      try (var ids = query.getResultStream()) {
+         var batch = new ArrayList<Long>(SCROLL_BATCH_SIZE);
+         for (var iterator = ids.iterator(); iterator.hasNext(); ) {
+            batch.add(iterator.next());
+            if (batch.size() == SCROLL_BATCH_SIZE || !iterator.hasNext()) {
+               fetchWithIngredients(batch).forEach(consumer);
+               // Detach the recipes handled so far, so the persistence context doesn't grow with the result.
+               entityManager.clear();
+               batch.clear();
+            }
+         }
+      }
+   }
+
+   // Fetch one extra result to find out if there is a next page.
+   private static <T> TypedQuery<T> limit(TypedQuery<T> query, RecipePageRequest pageRequest) {
+      if (pageRequest.getLimit() < Integer.MAX_VALUE) {
+         query.setMaxResults(pageRequest.getLimit() + 1);
+      }
+      return query;
+   }
+
+   // Fetch the recipes including their ingredients with a single statement, in the order of the ids.
+   private List<Recipe> fetchWithIngredients(List<Long> ids) {
+      return fetchInOrder(ids, FETCH_WITH_INGREDIENTS, Recipe.class, Recipe::getId);
+   }
+
+   private List<RecipeSummary> fetchSummaries(List<Long> ids) {
+      return fetchInOrder(ids, fetchSummariesQuery(), RecipeSummary.class, RecipeSummary::getId);
+   }
+
+   private static String summarySelect() {
+      return "new " + RecipeSummary.class.getName() + "(r.id, r.name, r.category, r.nofServings)";
+   }
+
+   private static String fetchSummariesQuery() {
+      return "select " + summarySelect() + " from recipes r where r.id in :ids";
+   }
+
+   private <T> List<T> fetchInOrder(List<Long> ids, String query, Class<T> resultClass, Function<T, Long> getId) {
+      if (ids.isEmpty()) {
+         return List.of();
+      }
+      var byId = new HashMap<Long, T>();
+      entityManager.createQuery(query, resultClass)
+                   .setParameter("ids", ids)
+                   .getResultList()
+                   .forEach(result -> byId.put(getId.apply(result), result));
+      // A recipe deleted in between the two queries is skipped.
+      return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+   }
+
+   // The ids of the matching recipes, ordered by the sum of the weights of the matching terms.
+   private TypedQuery<Long> createRelevanceQuery(RecipeSearchCriteria criteria) {
+      if (!criteria.hasText() || criteria.getTextMode() != TextMode.FULL_TEXT) {
+         throw new ValidationException("Ordering by relevance needs a full-text search");
+      }
+      var where = WhereShape.of(criteria);
+      var jpql = queries.computeIfAbsent(where, shape ->
+         "select rt.recipe from recipe_terms rt " +
+            "where rt.term in :allStems and rt.recipe in (select r.id from recipes r where " + where.clause() + ") " +
+            "group by rt.recipe order by sum(rt.weight) desc, rt.recipe asc");
+      var query = entityManager.createQuery(jpql, Long.class);
+      query.setParameter("allStems", criteria.getTextStems()
+                                             .stream()
+                                             .flatMap(Set::stream)
+                                             .collect(Collectors.toSet()));
+      where.bind(query, criteria);
+      return query;
+   }
+
+   private <T> TypedQuery<T> createQuery(String select, Class<T> resultClass,
+                                         RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      var after = pageRequest.getAfter();
+      var shape = new QueryShape(select, WhereShape.of(criteria), pageRequest.getSort(), after != null);
+      var query = entityManager.createQuery(queryFor(shape), resultClass);
+      shape.where().bind(query, criteria);
+      if (after != null) {
+         var values = after.getValues();
+         for (int i = 0; i < values.size(); i++) {
+            query.setParameter("after" + i, values.get(i));
+         }
+         query.setParameter("afterId", after.getId());
+      }
+      return query;
+   }
+
+   private String queryFor(QueryShape shape) {
+      return queries.computeIfAbsent(shape, key -> {
+         var clause = shape.where().clause();
+         if (shape.after()) {
+            clause += " and " + keysetClause(shape.sort());
+         }
+         var orderBy = shape.sort()
+                            .stream()
+                            .map(order -> "r." + order.getKey().getProperty() +
+                               (order.isAscending() ? " asc" : " desc"))
+                            .collect(Collectors.joining(", "));
+         return "select " + shape.select() + " from recipes r where " + clause + " order by " + orderBy + ", r.id asc";
+      });
+   }
+
+   private record QueryShape(String select, WhereShape where, List<RecipeSortOrder> sort, boolean after) {
+   }
+
+   // The criteria present in a search, the text mode is null without a text.
+   private record WhereShape(TextMode text, int nofWords, boolean category, boolean nofServings,
+                             boolean include, boolean exclude) {
+
+      static WhereShape of(RecipeSearchCriteria criteria) {
+         var text = criteria.hasText() ? criteria.getTextMode() : null;
+         var nofWords = text == TextMode.FULL_TEXT ? padded(criteria.getTextStems().size()) : 0;
+         return new WhereShape(text, nofWords, criteria.hasCategory(), criteria.hasNofServings(),
+                               !criteria.getIncludeIngredientIds().isEmpty(),
+                               !criteria.getExcludeIngredientIds().isEmpty());
+      }
+
+      // The where clause on the recipes "r".
+      String clause() {
+         var clauses = new ArrayList<String>(7);
+         // Recipes without ingredients are never found.
+         clauses.add("exists (select ri from recipe_ingredient ri where ri.recipe = r.id)");
+
+         // Every word should match one of its stems, using the index on the terms.
+         for (int i = 0; i < nofWords; i++) {
+            clauses.add(String.format("r.id in (select rt%d.recipe from recipe_terms rt%d where rt%d.term in :stems%d)",
+                                      i, i, i, i));
+         }
+         if (text == TextMode.SUBSTRING) {
+            clauses.add("(lower(r.name) like lower(:text) or lower(r.instructions) like lower(:text)) ");
+         }
+         if (category) {
+            clauses.add("r.category = :category");
+         }
+         if (nofServings) {
+            clauses.add("r.nofServings = :nofServings");
+         }
+         // Include is an "and" operation, a recipe must have at least all the ingredients from the set.
+         if (include) {
+            clauses.add("(select count(ri_inc) from recipe_ingredient ri_inc where ri_inc.recipe = r.id " +
+                           "and ri_inc.ingredient in :includeIngredients) = :includeIngredientsSize");
+         }
+         // Exclude is an "or" operation, a recipe is discarded if it contains just one ingredient from the set.
+         if (exclude) {
+            clauses.add("r.id not in (select ri_exc.recipe from recipe_ingredient ri_exc " +
+                           "where ri_exc.ingredient in :excludeIngredients)");
+         }
+         return String.join(" and ", clauses);
+      }
+
+      void bind(TypedQuery<?> query, RecipeSearchCriteria criteria) {
+         if (nofWords > 0) {
+            // The padding repeats the last word, which doesn't change the result.
+            var textStems = criteria.getTextStems();
+            for (int i = 0; i < nofWords; i++) {
+               query.setParameter("stems" + i, textStems.get(Math.min(i, textStems.size() - 1)));
+            }
+         }
+         if (text == TextMode.SUBSTRING) {
+            query.setParameter("text", "%" + criteria.getText() + "%");
+         }
+         if (category) {
+            query.setParameter("category", criteria.getCategory());
+         }
+         if (nofServings) {
+            query.setParameter("nofServings", criteria.getNofServings());
+         }
+         if (include) {
+            query.setParameter("includeIngredients", criteria.getIncludeIngredientIds());
+            query.setParameter("includeIngredientsSize", (long) criteria.getIncludeIngredientIds().size());
+         }
+         if (exclude) {
+            query.setParameter("excludeIngredients", criteria.getExcludeIngredientIds());
+         }
+      }
+
+      private static int padded(int nofWords) {
+         return nofWords <= 1 ? nofWords : Integer.highestOneBit(nofWords - 1) << 1;
+      }
+   }
+
+   // Only select the recipes after the cursor position, that is (k1, .., kn, id) > (:after0, .., :afterN, :afterId)
+   // expanded to: k1 > :after0 or (k1 = :after0 and k2 > :after1) or .. or (k1 = :after0 and .. and id > :afterId)
+   // with the comparison reversed for descending keys.
+   private static String keysetClause(List<RecipeSortOrder> sort) {
+      var alternatives = new ArrayList<String>(sort.size() + 1);
+      var equalities = new ArrayList<String>(sort.size());
+      for (int i = 0; i < sort.size(); i++) {
+         var order = sort.get(i);
+         var property = "r." + order.getKey().getProperty();
+         var comparison = property + (order.isAscending() ? " > " : " < ") + ":after" + i;
+         alternatives.add(and(equalities, comparison));
+         equalities.add(property + " = :after" + i);
+      }
+      alternatives.add(and(equalities, "r.id > :afterId"));
+      return "(" + String.join(" or ", alternatives) + ")";
+   }
+
+   private static String and(List<String> equalities, String comparison) {
+      var terms = new ArrayList<>(equalities);
+      terms.add(comparison);
+      return "(" + String.join(" and ", terms) + ")";
+   }
+}
@@ -0,0 +1,123 @@
+package nl.lambdatree.recipepicker.domain;
+
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Read only access to the recipes with R2DBC, for the reactive stack. A search has the same semantics as one of the
+ * JpqlRecipeSearchEngine, but streams the matching recipes in name order instead of returning a page.
+ *
+ * The recipes are read from the database cursor as the subscriber requests them. Their ingredients are fetched with
+ * a single query per batch of recipes, when the batch is requested, so the recipes held in memory are bounded by the
+ * batch size and not by the number of results.
+ */
+@RequiredArgsConstructor
+public class ReactiveRecipeRepository {
+
+   private static final String SELECT_RECIPES =
+      "select r.id, r.name, r.instructions, r.category, r.nof_servings, r.version from recipes r";
+
+   private static final String SELECT_SUMMARIES =
+      "select r.id, r.name, r.category, r.nof_servings from recipes r";
+
+   private static final String SELECT_INGREDIENTS =
+      "select ri.recipe, i.id, i.name from recipe_ingredient ri join ingredients i on i.id = ri.ingredient " +
+         "where ri.recipe in (:ids)";
+
+   private final DatabaseClient databaseClient;
+
+   // Executes the statements, a driver which blocks the calling thread (like the embedded H2) needs a scheduler of
+   // its own to keep it off the event loop.
+   private final Scheduler scheduler;
+
+   private final int batchSize;
+
+   // The recipe with its ingredients, empty if it doesn't exist.
+   public Mono<Recipe> findById(long id) {
+      return databaseClient.sql(SELECT_RECIPES + " where r.id = :id")
+                           .bind("id", id)
+                           .map(ReactiveRecipeRepository::toRecipe)
+                           .one()
+                           .subscribeOn(scheduler)
+                           .flatMap(recipe -> withIngredients(List.of(recipe)).next());
+   }
+
+   // At most limit recipes matching the criteria with their ingredients, ordered by name.
+   public Flux<Recipe> search(RecipeSearchCriteria criteria, int limit) {
+      return select(SELECT_RECIPES, criteria, limit).map(ReactiveRecipeRepository::toRecipe)
+                                                    .all()
+                                                    .subscribeOn(scheduler)
+                                                    .buffer(batchSize)
+                                                    // Only request the next batch when this one is consumed.
+                                                    .concatMap(this::withIngredients, 1);
+   }
+
+   // As search(), but only the summaries of the recipes.
+   public Flux<RecipeSummary> searchSummaries(RecipeSearchCriteria criteria, int limit) {
+      return select(SELECT_SUMMARIES, criteria, limit).map(ReactiveRecipeRepository::toSummary)
+                                                      .all()
+                                                      .subscribeOn(scheduler);
+   }
+
+   private DatabaseClient.GenericExecuteSpec select(String select, RecipeSearchCriteria criteria, int limit) {
+      var where = RecipeSearchSql.where(criteria);
+      var parameters = new HashMap<>(where.getParameters());
+      var sql = select + " where " + where.clause() +
+         " order by " + RecipeSearchSql.orderBy(RecipePageRequest.DEFAULT_SORT);
+      if (limit < Integer.MAX_VALUE) {
+         sql += " limit :limit";
+         parameters.put("limit", limit);
+      }
+      var spec = databaseClient.sql(sql);
+      for (var parameter : parameters.entrySet()) {
+         spec = spec.bind(parameter.getKey(), parameter.getValue());
+      }
+      return spec;
+   }
+
+   // Set the ingredients of the recipes, fetched with a single query.
+   private Flux<Recipe> withIngredients(List<Recipe> recipes) {
+      return databaseClient.sql(SELECT_INGREDIENTS)
+                           .bind("ids", recipes.stream().map(Recipe::getId).toList())
+                           .map(row -> Map.entry(row.get(0, Long.class),
+                                                 new Ingredient(row.get(1, Long.class), row.get(2, String.class))))
+                           .all()
+                           .collectMultimap(Map.Entry::getKey, Map.Entry::getValue)
+                           .subscribeOn(scheduler)
+                           .flatMapIterable(ingredients -> {
+                              recipes.forEach(recipe -> recipe.setIngredients(
+                                 Set.copyOf(ingredients.getOrDefault(recipe.getId(), List.of()))));
+                              return recipes;
+                           });
+   }
+
+   private static Recipe toRecipe(Row row) {
+      return Recipe.builder()
+                   .id(row.get(0, Long.class))
+                   .name(row.get(1, String.class))
+                   .instructions(row.get(2, String.class))
+                   .category(toCategory(row.get(3, Integer.class)))
+                   .nofServings(row.get(4, Integer.class))
+                   .version(row.get(5, Long.class))
+                   .build();
+   }
+
+   private static RecipeSummary toSummary(Row row) {
+      return new RecipeSummary(row.get(0, Long.class), row.get(1, String.class),
+                               toCategory(row.get(2, Integer.class)), row.get(3, Integer.class));
+   }
+
+   // Stored as the ordinal, like the Recipe entity does.
+   private static RecipeCategory toCategory(Integer ordinal) {
+      return ordinal == null ? null : RecipeCategory.values()[ordinal];
+   }
+}
@@ -1,9 +1,13 @@
 package nl.lambdatree.recipepicker.domain;
 
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.*;
+import java.util.Map;
 import java.util.Set;
 
 @Data
@@ -11,15 +15,29 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity(name = "recipes")
+@NamedEntityGraph(name = Recipe.WITH_INGREDIENTS, attributeNodes = @NamedAttributeNode("ingredients"))
 public class Recipe {
 
+   // Fetch plan which loads the ingredients in the same statement as the recipe.
+   public static final String WITH_INGREDIENTS = "Recipe.withIngredients";
+
    // Shared constraints between domain and the api
    public static final int NAME_LENGTH = 255;
    public static final int INSTRUCTIONS_LENGTH = 2048;
    public static final int MAX_NOF_SERVINGS = 16;
 
+   // Number of ids allocated with a single call to the recipes_seq sequence.
+   public static final int ID_BLOCK_SIZE = 50;
+
+   // Ids are allocated in blocks from a sequence, an identity column needs a round trip per insert to get the id.
+   // With the pooled-lo optimizer a sequence value is the first id of its block, the RecipeImporter relies on this.
    @Id
-   @GeneratedValue(strategy = GenerationType.IDENTITY)
+   @GeneratedValue(generator = "recipe_ids")
+   @GenericGenerator(name = "recipe_ids", strategy = "enhanced-sequence", parameters = {
+      @Parameter(name = "sequence_name", value = "recipes_seq"),
+      @Parameter(name = "increment_size", value = "" + ID_BLOCK_SIZE),
+      @Parameter(name = "optimizer", value = "pooled-lo")
+   })
    private Long id;
 
    @NotBlank
@@ -37,10 +55,31 @@ public class Recipe {
    @Max(MAX_NOF_SERVINGS)
    private int nofServings;
 
+   // Loaded on demand, for a batch of recipes at a time if not fetched explicitly, see WITH_INGREDIENTS.
    @NotEmpty
-   @ManyToMany(fetch = FetchType.EAGER)
+   @ManyToMany(fetch = FetchType.LAZY)
+   @BatchSize(size = 100)
    @JoinTable(name = "recipe_ingredient",
       joinColumns = @JoinColumn(name = "recipe"),
       inverseJoinColumns = @JoinColumn(name = "ingredient"))
    private Set<Ingredient> ingredients;
+
+   // Incremented by every update, an update based on an older version fails with an OptimisticLockException.
+   @Version
+   private long version;
+
+   // The full-text index of the name and instructions: the weight of every stem, see TextAnalyzer.
+   // Created when the recipe is persisted, an updated recipe should be indexed before it is merged.
+   @ToString.Exclude
+   @EqualsAndHashCode.Exclude
+   @ElementCollection(fetch = FetchType.LAZY)
+   @CollectionTable(name = "recipe_terms", joinColumns = @JoinColumn(name = "recipe"))
+   @MapKeyColumn(name = "term")
+   @Column(name = "weight")
+   private Map<String, Integer> terms;
+
+   @PrePersist
+   public void indexTerms() {
+      terms = TextAnalyzer.weights(name, instructions);
+   }
 }
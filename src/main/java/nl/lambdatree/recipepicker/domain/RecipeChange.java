@@ -0,0 +1,16 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/*
+ * An entry of the change log of the recipes, see RecipeChangeLog.
+ */
+@Value
+public class RecipeChange {
+   long seq;
+   long recipeId;
+   RecipeChangedEvent.Operation operation;
+   Instant changedAt;
+}
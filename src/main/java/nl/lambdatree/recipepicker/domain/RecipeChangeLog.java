@@ -0,0 +1,110 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Log of every change of a recipe with an increasing sequence number, so consumers can fetch the changes since the
+ * last one they have seen instead of re-reading all recipes.
+ *
+ * A change is logged in the transaction of the change itself. The sequence number is incremented in a single row
+ * which stays locked until the transaction completes, so changes are committed in the order of their sequence
+ * numbers: a consumer never sees a change before an earlier one is visible too. This serializes the recipe changes,
+ * which are rare compared to the reads.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecipeChangeLog {
+
+   private final JdbcTemplate jdbcTemplate;
+
+   // The consumers waiting for a change after their sequence number.
+   private record Waiter(long since, CompletableFuture<Void> future) {
+   }
+
+   private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+   // Runs synchronously when the RecipeService publishes the event, inside its transaction.
+   @EventListener
+   public void onRecipeChanging(RecipeChangedEvent event) {
+      if (!event.isLogged()) {
+         logAll(List.of(event));
+      }
+   }
+
+   // Log the changes in the current transaction, with a block of consecutive sequence numbers reserved at once and a
+   // single batch of inserts, so a large import doesn't hold the sequence row for a statement per change.
+   public void logAll(List<RecipeChangedEvent> changes) {
+      if (changes.isEmpty()) {
+         return;
+      }
+      jdbcTemplate.update("update recipe_change_seq set seq = seq + ?", changes.size());
+      var last = jdbcTemplate.queryForObject("select seq from recipe_change_seq", Long.class);
+      var first = last - changes.size() + 1;
+      var changedAt = Timestamp.from(Instant.now());
+      var rows = new ArrayList<Object[]>(changes.size());
+      for (int i = 0; i < changes.size(); i++) {
+         var change = changes.get(i);
+         rows.add(new Object[]{first + i, change.getRecipeId(), change.getOperation().name(), changedAt});
+      }
+      jdbcTemplate.batchUpdate("insert into recipe_changes (seq, recipe, operation, changed_at) values (?, ?, ?, ?)",
+                               rows);
+
+      if (TransactionSynchronizationManager.isSynchronizationActive()) {
+         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+               notifyWaiters(last);
+            }
+         });
+      } else {
+         notifyWaiters(last);
+      }
+   }
+
+   // At most limit changes after the sequence number, in the order of their sequence numbers.
+   public List<RecipeChange> findAfter(long since, int limit) {
+      return jdbcTemplate.query("select seq, recipe, operation, changed_at from recipe_changes " +
+                                   "where seq > ? order by seq limit ?",
+                                (rs, row) -> new RecipeChange(rs.getLong(1),
+                                                              rs.getLong(2),
+                                                              RecipeChangedEvent.Operation.valueOf(rs.getString(3)),
+                                                              rs.getTimestamp(4).toInstant()),
+                                since, limit);
+   }
+
+   public long getLastSeq() {
+      return jdbcTemplate.queryForObject("select seq from recipe_change_seq", Long.class);
+   }
+
+   // Completes when there is a committed change after the sequence number, or when the timeout expires.
+   public CompletableFuture<Void> awaitChangeAfter(long since, Duration timeout) {
+      var waiter = new Waiter(since, new CompletableFuture<>());
+      waiters.add(waiter);
+      waiter.future().whenComplete((result, e) -> waiters.remove(waiter));
+      // Check after registering, a change committed in between notifies the waiter as well.
+      if (getLastSeq() > since) {
+         waiter.future().complete(null);
+      }
+      return waiter.future().completeOnTimeout(null, timeout.toMillis(), TimeUnit.MILLISECONDS);
+   }
+
+   private void notifyWaiters(long seq) {
+      waiters.stream()
+             .filter(waiter -> waiter.since() < seq)
+             .forEach(waiter -> waiter.future().complete(null));
+   }
+}
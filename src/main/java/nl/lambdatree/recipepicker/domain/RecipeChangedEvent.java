@@ -0,0 +1,31 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import org.springframework.lang.Nullable;
+
+/*
+ * Published by the RecipeService when a recipe is created, updated or deleted.
+ */
+@Value
+@AllArgsConstructor
+public class RecipeChangedEvent {
+
+   public enum Operation {
+      CREATED, UPDATED, DELETED
+   }
+
+   Operation operation;
+   long recipeId;
+   // The version of the recipe after the change, for a deletion the version which was deleted. The listeners which
+   // run after the commit can handle the changes of a recipe out of order, so use it to ignore older changes.
+   long version;
+   @Nullable
+   Recipe recipe; // The new state of the recipe, null for deletions.
+   // Already in the RecipeChangeLog, like the changes of an import which are logged with a single batch.
+   boolean logged;
+
+   public RecipeChangedEvent(Operation operation, long recipeId, long version, @Nullable Recipe recipe) {
+      this(operation, recipeId, version, recipe, false);
+   }
+}
@@ -0,0 +1,24 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Value;
+
+import java.util.List;
+
+/*
+ * Position in a sorted search result: the values of the sort keys and the id of the last recipe of a page.
+ * The next page starts with the recipe directly after this position (keyset pagination), so fetching a page
+ * doesn't depend on the number of pages before it.
+ */
+@Value
+public class RecipeCursor {
+
+   List<Comparable<?>> values; // In the order of the sort keys.
+   long id;
+
+   public static RecipeCursor after(RecipeSummary recipe, List<RecipeSortOrder> sort) {
+      var values = sort.stream()
+                       .<Comparable<?>>map(order -> order.getKey().valueOf(recipe))
+                       .toList();
+      return new RecipeCursor(values, recipe.getId());
+   }
+}
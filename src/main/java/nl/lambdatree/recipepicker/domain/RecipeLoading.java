@@ -0,0 +1,45 @@
+package nl.lambdatree.recipepicker.domain;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+ * Loading of the recipes for the search engines which find the ids of the recipes themselves, from an index or a
+ * cache, and only load the matching recipes from the database.
+ */
+final class RecipeLoading {
+
+   private RecipeLoading() {
+   }
+
+   // The recipes with their ingredients, in the order of the ids. A recipe deleted after it was found is skipped.
+   static List<Recipe> loadInOrder(RecipeRepository recipeRepository, List<Long> ids) {
+      if (ids.isEmpty()) {
+         return List.of();
+      }
+      var byId = new HashMap<Long, Recipe>();
+      recipeRepository.findAllById(ids).forEach(recipe -> byId.put(recipe.getId(), recipe));
+      return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+   }
+
+   // The ingredient ids of each of the recipes, for (re)building an index. Recipes without ingredients are absent.
+   static Map<Long, Set<Long>> loadIngredientIds(EntityManager entityManager, List<Long> recipeIds) {
+      return entityManager.createQuery(
+                             "select ri.recipe, ri.ingredient from recipe_ingredient ri where ri.recipe in :recipeIds",
+                             Object[].class)
+                          .setParameter("recipeIds", recipeIds)
+                          .getResultList()
+                          .stream()
+                          .collect(Collectors.groupingBy(row -> (Long) row[0],
+                                                         Collectors.mapping(row -> (Long) row[1],
+                                                                            Collectors.toSet())));
+   }
+}
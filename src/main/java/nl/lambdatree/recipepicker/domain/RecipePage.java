@@ -0,0 +1,33 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Value;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.function.Function;
+
+/*
+ * A page of search results (recipes or recipe summaries), with the cursor of the next page if there are more results.
+ */
+@Value
+public class RecipePage<T> {
+
+   List<T> recipes;
+   @Nullable
+   RecipeCursor next;
+
+   // Create a page from at most limit + 1 results, the extra result signals that there is a next page.
+   // There are no next pages when ordering by relevance.
+   public static <T> RecipePage<T> of(List<T> results, RecipePageRequest pageRequest,
+                                      Function<T, RecipeSummary> toSummary) {
+      if (results.size() <= pageRequest.getLimit()) {
+         return new RecipePage<>(results, null);
+      }
+      var recipes = results.subList(0, pageRequest.getLimit());
+      if (pageRequest.isByRelevance()) {
+         return new RecipePage<>(recipes, null);
+      }
+      var last = toSummary.apply(recipes.get(recipes.size() - 1));
+      return new RecipePage<>(recipes, RecipeCursor.after(last, pageRequest.getSort()));
+   }
+}
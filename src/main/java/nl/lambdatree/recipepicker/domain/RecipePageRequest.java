@@ -0,0 +1,46 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import org.springframework.lang.Nullable;
+
+import javax.validation.ValidationException;
+import java.util.List;
+
+/*
+ * Which page of the search results to return: at most "limit" recipes after the cursor, in the sort order.
+ *
+ * Ordering by relevance (of a full-text search) only returns the first page, the most relevant recipes.
+ */
+@Value
+@Builder(toBuilder = true)
+public class RecipePageRequest {
+
+   public static final List<RecipeSortOrder> DEFAULT_SORT = List.of(RecipeSortOrder.asc(RecipeSortKey.NAME));
+
+   @Builder.Default
+   int limit = Integer.MAX_VALUE;
+   @NonNull
+   @Builder.Default
+   List<RecipeSortOrder> sort = DEFAULT_SORT;
+   @Nullable
+   RecipeCursor after; // Start at the first recipe if absent.
+   boolean byRelevance; // Order by descending relevance and id instead of the sort.
+
+   public static RecipePageRequest unlimited() {
+      return RecipePageRequest.builder().build();
+   }
+
+   public void validate() {
+      if (limit < 1) {
+         throw new ValidationException("The limit should be at least 1");
+      }
+      if (byRelevance && after != null) {
+         throw new ValidationException("Only the first page can be ordered by relevance");
+      }
+      if (after != null && after.getValues().size() != sort.size()) {
+         throw new ValidationException("The cursor doesn't match the sort order");
+      }
+   }
+}
@@ -1,6 +1,29 @@
 package nl.lambdatree.recipepicker.domain;
 
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
-public interface RecipeRepository extends CrudRepository<Recipe, Long> {
+import java.util.List;
+import java.util.Optional;
+
+public interface RecipeRepository extends CrudRepository<Recipe, Long>, RecipeRepositoryCustom {
+
+   // Recipes are always returned with their ingredients, load those with a join instead of a separate select.
+
+   @Override
+   @EntityGraph(Recipe.WITH_INGREDIENTS)
+   Optional<Recipe> findById(Long id);
+
+   @Override
+   @EntityGraph(Recipe.WITH_INGREDIENTS)
+   Iterable<Recipe> findAllById(Iterable<Long> ids);
+
+   // The version of a recipe, without loading it.
+   @Query("select r.version from recipes r where r.id = :id")
+   Optional<Long> findVersionById(long id);
+
+   // Recipes inserted without the entity, like the sample data, have no full-text index yet.
+   @Query("select r from recipes r where r.terms is empty")
+   List<Recipe> findWithoutTerms();
 }
@@ -0,0 +1,24 @@
+package nl.lambdatree.recipepicker.domain;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Optional;
+import java.util.Set;
+
+/*
+ * Changes of existing recipes with direct statements, without loading the recipes first.
+ */
+public interface RecipeRepositoryCustom {
+
+   // Update the recipe with the id of the recipe if it has the expected version (any version if null), including its
+   // ingredients and terms, and set its new version. Returns false if there is no such recipe.
+   boolean updateDirectly(Recipe recipe, @Nullable Long expectedVersion);
+
+   // Add and remove ingredients (by id) of the recipe if it has the expected version (any version if null), leaving
+   // the other ingredients as they are. Returns false if there is no such recipe.
+   boolean patchIngredients(long id, Set<Long> added, Set<Long> removed, @Nullable Long expectedVersion);
+
+   // Delete the recipe if it has the expected version (any version if null). Returns the version which was deleted,
+   // empty if there is no such recipe.
+   Optional<Long> deleteDirectly(long id, @Nullable Long expectedVersion);
+}
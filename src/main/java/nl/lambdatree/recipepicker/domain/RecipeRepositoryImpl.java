@@ -0,0 +1,159 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.lang.Nullable;
+
+import javax.validation.ValidationException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+ * Implementation of RecipeRepositoryCustom, picked up by Spring Data as part of the RecipeRepository.
+ *
+ * An update only writes the ingredient and term rows which changed, instead of deleting and re-inserting all of them.
+ * The rows of a deleted recipe are removed by the "on delete cascade" of the recipe_ingredient and recipe_terms tables.
+ * These statements bypass the persistence context, so must not be mixed with changes to a loaded Recipe.
+ */
+@RequiredArgsConstructor
+public class RecipeRepositoryImpl implements RecipeRepositoryCustom {
+
+   private final NamedParameterJdbcTemplate jdbcTemplate;
+
+   @Override
+   public boolean updateDirectly(Recipe recipe, @Nullable Long expectedVersion) {
+      var parameters = new MapSqlParameterSource()
+         .addValue("id", recipe.getId())
+         .addValue("name", recipe.getName())
+         .addValue("instructions", recipe.getInstructions())
+         .addValue("category", recipe.getCategory().ordinal())
+         .addValue("nofServings", recipe.getNofServings())
+         .addValue("version", expectedVersion);
+      var updated = jdbcTemplate.update("update recipes set name = :name, instructions = :instructions, " +
+                                           "category = :category, nof_servings = :nofServings, version = version + 1 " +
+                                           "where id = :id" + (expectedVersion == null ? "" : " and version = :version"),
+                                        parameters);
+      if (updated == 0) {
+         return false;
+      }
+      var wanted = recipe.getIngredients()
+                         .stream()
+                         .map(Ingredient::getId)
+                         .collect(Collectors.toSet());
+      // The current ingredients and the new version, the recipe is locked by the update so that is still our version.
+      var current = new HashSet<Long>();
+      jdbcTemplate.query("select r.version, ri.ingredient from recipes r " +
+                            "left join recipe_ingredient ri on ri.recipe = r.id where r.id = :recipe",
+                         Map.of("recipe", recipe.getId()),
+                         rs -> {
+                            recipe.setVersion(rs.getLong(1));
+                            var ingredient = rs.getLong(2);
+                            if (!rs.wasNull()) {
+                               current.add(ingredient);
+                            }
+                         });
+      changeIngredients(recipe.getId(), difference(current, wanted), difference(wanted, current));
+      updateTerms(recipe);
+      return true;
+   }
+
+   @Override
+   public boolean patchIngredients(long id, Set<Long> added, Set<Long> removed, @Nullable Long expectedVersion) {
+      var parameters = new MapSqlParameterSource()
+         .addValue("id", id)
+         .addValue("version", expectedVersion);
+      var updated = jdbcTemplate.update("update recipes set version = version + 1 where id = :id" +
+                                           (expectedVersion == null ? "" : " and version = :version"),
+                                        parameters);
+      if (updated == 0) {
+         return false;
+      }
+      var current = findIngredients(id);
+      var remaining = difference(current, removed);
+      remaining.addAll(added);
+      if (remaining.isEmpty()) {
+         throw new ValidationException(String.format("Recipe %d would have no ingredients left", id));
+      }
+      var intersection = new HashSet<>(current);
+      intersection.retainAll(removed);
+      changeIngredients(id, intersection, difference(added, current));
+      return true;
+   }
+
+   @Override
+   public Optional<Long> deleteDirectly(long id, @Nullable Long expectedVersion) {
+      // Lock the recipe first, so the version can't change before it is deleted.
+      var version = jdbcTemplate.queryForList("select version from recipes where id = :id for update",
+                                              Map.of("id", id), Long.class)
+                                .stream()
+                                .findFirst()
+                                .filter(current -> expectedVersion == null || current.equals(expectedVersion));
+      version.ifPresent(deleted -> jdbcTemplate.update("delete from recipes where id = :id", Map.of("id", id)));
+      return version;
+   }
+
+   private Set<Long> findIngredients(long id) {
+      return new HashSet<>(jdbcTemplate.queryForList("select ingredient from recipe_ingredient where recipe = :recipe",
+                                                     Map.of("recipe", id), Long.class));
+   }
+
+   // Only the ingredients which changed are written, the removed ones with a single delete, the added ones in a batch.
+   private void changeIngredients(long id, Set<Long> removed, Set<Long> added) {
+      if (!removed.isEmpty()) {
+         jdbcTemplate.update("delete from recipe_ingredient where recipe = :recipe and ingredient in (:ingredients)",
+                             Map.of("recipe", id, "ingredients", removed));
+      }
+      if (!added.isEmpty()) {
+         jdbcTemplate.batchUpdate("insert into recipe_ingredient (recipe, ingredient) values (:recipe, :ingredient)",
+                                  added.stream()
+                                       .map(ingredient -> new MapSqlParameterSource().addValue("recipe", id)
+                                                                                     .addValue("ingredient", ingredient))
+                                       .toArray(MapSqlParameterSource[]::new));
+      }
+   }
+
+   private static Set<Long> difference(Set<Long> first, Set<Long> second) {
+      var difference = new HashSet<>(first);
+      difference.removeAll(second);
+      return difference;
+   }
+
+   // A term with a different weight is replaced, that is deleted and inserted again.
+   private void updateTerms(Recipe recipe) {
+      var current = new HashMap<String, Integer>();
+      jdbcTemplate.query("select term, weight from recipe_terms where recipe = :recipe",
+                         Map.of("recipe", recipe.getId()),
+                         rs -> {
+                            current.put(rs.getString(1), rs.getInt(2));
+                         });
+      var wanted = recipe.getTerms();
+
+      var stale = current.entrySet()
+                         .stream()
+                         .filter(term -> !term.getValue().equals(wanted.get(term.getKey())))
+                         .map(Map.Entry::getKey)
+                         .collect(Collectors.toSet());
+      if (!stale.isEmpty()) {
+         jdbcTemplate.update("delete from recipe_terms where recipe = :recipe and term in (:terms)",
+                             Map.of("recipe", recipe.getId(), "terms", stale));
+      }
+      var added = new ArrayList<MapSqlParameterSource>();
+      wanted.forEach((term, weight) -> {
+         if (!weight.equals(current.get(term))) {
+            added.add(new MapSqlParameterSource().addValue("recipe", recipe.getId())
+                                                 .addValue("term", term)
+                                                 .addValue("weight", weight));
+         }
+      });
+      if (!added.isEmpty()) {
+         jdbcTemplate.batchUpdate("insert into recipe_terms (recipe, term, weight) values (:recipe, :term, :weight)",
+                                  added.toArray(MapSqlParameterSource[]::new));
+      }
+   }
+}
@@ -0,0 +1,111 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.validation.ValidationException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+ * The criteria of a recipe search, shared by the search engine implementations.
+ * Missing criteria are represented by a blank text, RecipeCategory.ALL, zero servings and empty ingredient sets.
+ */
+@Value
+@Builder
+public class RecipeSearchCriteria {
+
+   @NonNull
+   @Builder.Default
+   String text = "";
+   @NonNull
+   @Builder.Default
+   TextMode textMode = TextMode.SUBSTRING;
+   @NonNull
+   @Builder.Default
+   RecipeCategory category = RecipeCategory.ALL;
+   int nofServings;
+   @NonNull
+   @Builder.Default
+   Set<Long> includeIngredientIds = Set.of();
+   @NonNull
+   @Builder.Default
+   Set<Long> excludeIngredientIds = Set.of();
+
+   // Every word of a full-text search is a subquery of its own, and the number of words determines the query shape.
+   public static final int MAX_TEXT_WORDS = 8;
+
+   // Throw an exception if the two ingredient sets have overlapping members, which would give an empty result,
+   // or if a full-text search has too many words.
+   public void validate() {
+      includeIngredientIds.stream()
+                          .filter(excludeIngredientIds::contains)
+                          .findFirst()
+                          .ifPresent(id -> {
+                             throw new ValidationException(
+                                String.format("Ingredient %d is in both include and exclude sets", id));
+                          });
+      if (textMode == TextMode.FULL_TEXT && hasText() && getTextStems().size() > MAX_TEXT_WORDS) {
+         throw new ValidationException(
+            String.format("A full-text search can have at most %d distinct words", MAX_TEXT_WORDS));
+      }
+   }
+
+   public boolean hasText() {
+      return StringUtils.isNotBlank(text);
+   }
+
+   public boolean hasCategory() {
+      return category != RecipeCategory.ALL;
+   }
+
+   public boolean hasNofServings() {
+      return nofServings > 0;
+   }
+
+   // Evaluate the criteria against a single recipe, with the same semantics as the database search.
+   public boolean matches(Recipe recipe) {
+      if (hasCategory() && recipe.getCategory() != category) {
+         return false;
+      }
+      if (hasNofServings() && recipe.getNofServings() != nofServings) {
+         return false;
+      }
+      var ingredientIds = recipe.getIngredients()
+                                .stream()
+                                .map(Ingredient::getId)
+                                .toList();
+      if (ingredientIds.isEmpty()
+         || !ingredientIds.containsAll(includeIngredientIds)
+         || ingredientIds.stream().anyMatch(excludeIngredientIds::contains)) {
+         return false;
+      }
+      return matchesText(recipe);
+   }
+
+   // The stems of every distinct word of the text, for a full-text search.
+   public List<Set<String>> getTextStems() {
+      return TextAnalyzer.analyze(text)
+                         .stream()
+                         .distinct()
+                         .toList();
+   }
+
+   // A full-text match, or a case-insensitive substring match on the name or the instructions.
+   public boolean matchesText(Recipe recipe) {
+      if (!hasText()) {
+         return true;
+      }
+      if (textMode == TextMode.FULL_TEXT) {
+         var stems = TextAnalyzer.weights(recipe.getName(), recipe.getInstructions()).keySet();
+         return getTextStems().stream()
+                              .allMatch(alternatives -> alternatives.stream().anyMatch(stems::contains));
+      }
+      var lowerText = text.toLowerCase(Locale.ROOT);
+      return recipe.getName().toLowerCase(Locale.ROOT).contains(lowerText)
+         || recipe.getInstructions().toLowerCase(Locale.ROOT).contains(lowerText);
+   }
+}
@@ -0,0 +1,37 @@
+package nl.lambdatree.recipepicker.domain;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+ * Executes recipe searches for the RecipeService.
+ *
+ * Implementations which keep their own index should listen for RecipeChangedEvents, these are published by the
+ * RecipeService for every create, update and delete.
+ */
+public interface RecipeSearchEngine {
+
+   // Find a page of the recipes matching the criteria, in the sort order of the page request.
+   // The recipes are returned with their ingredients loaded.
+   RecipePage<Recipe> search(RecipeSearchCriteria criteria, RecipePageRequest pageRequest);
+
+   // As search(), but only returns the summaries of the recipes, without loading their instructions and ingredients.
+   RecipePage<RecipeSummary> searchSummaries(RecipeSearchCriteria criteria, RecipePageRequest pageRequest);
+
+   // Find all the recipes matching the criteria, ordered by name.
+   default List<Recipe> search(RecipeSearchCriteria criteria) {
+      return search(criteria, RecipePageRequest.unlimited()).getRecipes();
+   }
+
+   // Pass all the recipes matching the criteria to the consumer, ordered by name. Recipes are detached from the
+   // persistence context while scrolling, so the memory use doesn't depend on the number of results.
+   void scroll(RecipeSearchCriteria criteria, Consumer<Recipe> consumer);
+
+   // (Re)build any index from the current contents of the database.
+   default void rebuild() {
+   }
+
+   // Update any index after a change of a recipe is committed.
+   default void onRecipeChanged(RecipeChangedEvent event) {
+   }
+}
@@ -0,0 +1,115 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Getter;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/*
+ * The conditions of a recipe search in SQL, on the recipes table "r" and the recipe_ingredient and recipe_terms
+ * tables, for the searches which query the tables directly instead of the entities. The same conditions as the JPQL
+ * of the JpqlRecipeSearchEngine.
+ *
+ * The parameters are named, the "in" lists are bound as collections (expanded by Spring's named parameter support).
+ */
+class RecipeSearchSql {
+
+   private final List<String> clauses = new ArrayList<>(8);
+
+   @Getter
+   private final Map<String, Object> parameters = new HashMap<>();
+
+   static RecipeSearchSql where(RecipeSearchCriteria criteria) {
+      criteria.validate();
+      var sql = new RecipeSearchSql();
+      // Recipes without ingredients are never found.
+      sql.clauses.add("exists (select 1 from recipe_ingredient ri where ri.recipe = r.id)");
+
+      // Every word should match one of its stems, using the index on the terms.
+      if (criteria.hasText() && criteria.getTextMode() == TextMode.FULL_TEXT) {
+         var textStems = criteria.getTextStems();
+         for (int i = 0; i < textStems.size(); i++) {
+            sql.clauses.add(String.format("r.id in (select rt%d.recipe from recipe_terms rt%d " +
+                                             "where rt%d.term in (:stems%d))", i, i, i, i));
+            sql.parameters.put("stems" + i, textStems.get(i));
+         }
+      }
+      if (criteria.hasText() && criteria.getTextMode() == TextMode.SUBSTRING) {
+         sql.clauses.add("(lower(r.name) like :text or lower(r.instructions) like :text)");
+         sql.parameters.put("text", "%" + criteria.getText().toLowerCase(Locale.ROOT) + "%");
+      }
+      if (criteria.hasCategory()) {
+         sql.clauses.add("r.category = :category");
+         sql.parameters.put("category", criteria.getCategory().ordinal());
+      }
+      if (criteria.hasNofServings()) {
+         sql.clauses.add("r.nof_servings = :nofServings");
+         sql.parameters.put("nofServings", criteria.getNofServings());
+      }
+      // Include is an "and" operation, a recipe must have at least all the ingredients from the set.
+      if (!criteria.getIncludeIngredientIds().isEmpty()) {
+         sql.clauses.add("(select count(*) from recipe_ingredient ri_inc where ri_inc.recipe = r.id " +
+                            "and ri_inc.ingredient in (:includeIngredients)) = :includeIngredientsSize");
+         sql.parameters.put("includeIngredients", criteria.getIncludeIngredientIds());
+         sql.parameters.put("includeIngredientsSize", (long) criteria.getIncludeIngredientIds().size());
+      }
+      // Exclude is an "or" operation, a recipe is discarded if it contains just one ingredient from the set.
+      if (!criteria.getExcludeIngredientIds().isEmpty()) {
+         sql.clauses.add("r.id not in (select ri_exc.recipe from recipe_ingredient ri_exc " +
+                            "where ri_exc.ingredient in (:excludeIngredients))");
+         sql.parameters.put("excludeIngredients", criteria.getExcludeIngredientIds());
+      }
+      return sql;
+   }
+
+   // Only the recipes after the cursor in the sort order, like the keyset clause of the JpqlRecipeSearchEngine.
+   RecipeSearchSql after(@Nullable RecipeCursor cursor, List<RecipeSortOrder> sort) {
+      if (cursor == null) {
+         return this;
+      }
+      var alternatives = new ArrayList<String>(sort.size() + 1);
+      var equalities = new ArrayList<String>(sort.size());
+      for (int i = 0; i < sort.size(); i++) {
+         var order = sort.get(i);
+         var column = column(order.getKey());
+         alternatives.add(and(equalities, column + (order.isAscending() ? " > " : " < ") + ":after" + i));
+         equalities.add(column + " = :after" + i);
+         var value = cursor.getValues().get(i);
+         parameters.put("after" + i, value instanceof RecipeCategory category ? category.ordinal() : value);
+      }
+      alternatives.add(and(equalities, "r.id > :afterId"));
+      parameters.put("afterId", cursor.getId());
+      clauses.add("(" + String.join(" or ", alternatives) + ")");
+      return this;
+   }
+
+   String clause() {
+      return String.join(" and ", clauses);
+   }
+
+   // The sort order, with the id as the final tie-breaker.
+   static String orderBy(List<RecipeSortOrder> sort) {
+      return sort.stream()
+                 .map(order -> column(order.getKey()) + (order.isAscending() ? " asc" : " desc"))
+                 .collect(Collectors.joining(", ", "", ", r.id asc"));
+   }
+
+   private static String column(RecipeSortKey key) {
+      return switch (key) {
+         case NAME -> "r.name";
+         case CATEGORY -> "r.category";
+         case NOF_SERVINGS -> "r.nof_servings";
+      };
+   }
+
+   private static String and(List<String> equalities, String comparison) {
+      var terms = new ArrayList<>(equalities);
+      terms.add(comparison);
+      return "(" + String.join(" and ", terms) + ")";
+   }
+}
@@ -2,97 +2,171 @@ package nl.lambdatree.recipepicker.domain;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
-import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import javax.transaction.Transactional;
 import javax.validation.ValidationException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /*
  * Service to orchestrate recipe actions on the recipe repository.
+ *
+ * Every change publishes a RecipeChangedEvent, within the transaction of the change.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class RecipeService {
 
-   private final EntityManager entityManager;
+   private final RecipeRepository recipeRepository;
+
+   private final RecipeSearchEngine recipeSearchEngine;
 
+   private final ApplicationEventPublisher eventPublisher;
+
+   @Transactional
    public Recipe create(Recipe recipe) {
       var created = recipeRepository.save(recipe);
       log.info("Created recipe {} with id {}", created.getName(), created.getId());
+      eventPublisher.publishEvent(new RecipeChangedEvent(RecipeChangedEvent.Operation.CREATED, created.getId(),
+                                                         created.getVersion(), created));
       return created;
    }
 
-   private final RecipeRepository recipeRepository;
    public void update(long id, Recipe recipe) {
-      recipeRepository.findById(id).orElseThrow(); // Just check if the recipe is present.
+      update(id, recipe, null);
+   }
+
+   // Only update the recipe if it still has the expected version, any version if that is null.
+   // The recipe isn't loaded first, only the ingredients and terms which changed are written.
+   @Transactional
+   public void update(long id, Recipe recipe, @Nullable Long expectedVersion) {
       recipe.setId(id);
-      recipeRepository.save(recipe);
+      recipe.indexTerms();
+      if (!recipeRepository.updateDirectly(recipe, expectedVersion)) {
+         throw notFoundOrVersionMismatch(id, expectedVersion);
+      }
       log.info("Updated recipe {} with id {}", recipe.getName(), id);
+      eventPublisher.publishEvent(new RecipeChangedEvent(RecipeChangedEvent.Operation.UPDATED, id,
+                                                         recipe.getVersion(), recipe));
+   }
+
+   // Add and remove ingredients of the recipe, if it still has the expected version (any version if that is null).
+   // Only the changed recipe_ingredient rows are written, returns the recipe with its new ingredients and version.
+   @Transactional
+   public Recipe patchIngredients(long id, Set<Ingredient> added, Set<Ingredient> removed,
+                                  @Nullable Long expectedVersion) {
+      checkForOverlap(added, removed);
+      if (!recipeRepository.patchIngredients(id, extractIds(added), extractIds(removed), expectedVersion)) {
+         throw notFoundOrVersionMismatch(id, expectedVersion);
+      }
+      // The listeners of the event need the complete recipe, a single statement including the ingredients.
+      var patched = recipeRepository.findById(id).orElseThrow();
+      log.info("Changed the ingredients of recipe {} with id {}", patched.getName(), id);
+      eventPublisher.publishEvent(new RecipeChangedEvent(RecipeChangedEvent.Operation.UPDATED, id,
+                                                         patched.getVersion(), patched));
+      return patched;
    }
 
    public void delete(Long id) {
-      var found = recipeRepository.findById(id).orElseThrow(); // Just check if the recipe is present.
-      recipeRepository.deleteById(id);
-      log.info("Deleted recipe {} with id {}", found.getName(), id);
+      delete(id, null);
+   }
+
+   // Only delete the recipe if it still has the expected version, any version if that is null.
+   @Transactional
+   public void delete(Long id, @Nullable Long expectedVersion) {
+      var version = recipeRepository.deleteDirectly(id, expectedVersion)
+                                    .orElseThrow(() -> notFoundOrVersionMismatch(id, expectedVersion));
+      log.info("Deleted recipe with id {}", id);
+      eventPublisher.publishEvent(new RecipeChangedEvent(RecipeChangedEvent.Operation.DELETED, id, version, null));
    }
 
-   @SuppressWarnings("unchecked")
    public List<Recipe> search(String text,
       RecipeCategory category,
       int nofServings,
       Set<Ingredient> includeIngredients,
       Set<Ingredient> excludeIngredients) {
 
+      return search(text, category, nofServings, includeIngredients, excludeIngredients,
+                    RecipePageRequest.unlimited()).getRecipes();
+   }
+
+   public RecipePage<Recipe> search(String text,
+      RecipeCategory category,
+      int nofServings,
+      Set<Ingredient> includeIngredients,
+      Set<Ingredient> excludeIngredients,
+      RecipePageRequest pageRequest) {
+
       checkForOverlap(includeIngredients, excludeIngredients);
 
-      // Exclude missing search parameters from the where clause.
-      var clauses = new ArrayList<String>(6);
-      var parameters = new ArrayList<Pair<String, Object>>(6);
+      return search(toCriteria(text, category, nofServings, includeIngredients, excludeIngredients), pageRequest);
+   }
 
-      // TODO: use the full-text search of h2 / sqlite?
-      if (StringUtils.isNotBlank(text)) {
-         clauses.add("(lower(r.name) like lower(:text) or lower(r.instructions) like lower(:text)) ");
-         parameters.add(Pair.of("text", "%" + text + "%"));
-      }
-      if (category != RecipeCategory.ALL) {
-         clauses.add("r.category = :category");
-         parameters.add(Pair.of("category", category));
-      }
-      if (nofServings > 0) {
-         clauses.add("r.nofServings = :nofServings");
-         parameters.add(Pair.of("nofServings", nofServings));
-      }
-      // Include is an "and" operation, a recipe must have at least all the ingredients from the set.
-      if (!includeIngredients.isEmpty()) {
-         clauses.add("r.id in (select recipe from recipe_ingredient ri_inc where " +
-                        "(select count(*) from recipe_ingredient ri_inc where ri.recipe = ri_inc.recipe " +
-                        "and ri_inc.ingredient in :includeIngredients) = :includeIngredientsSize)");
-         parameters.add(Pair.of("includeIngredients", extractIds(includeIngredients)));
-         parameters.add(Pair.of("includeIngredientsSize", (long) includeIngredients.size()));
-      }
-      // Exclude is an "or" operation, a recipe is discarded if it contains just one ingredient from the set.
-      if (!excludeIngredients.isEmpty()) {
-         clauses.add("r.id not in " +
-                        "(select ri_exc.recipe from recipe_ingredient ri_exc where ri_exc.ingredient in :excludeIngredients)");
-         parameters.add(Pair.of("excludeIngredients", extractIds(excludeIngredients)));
-      }
+   public RecipePage<Recipe> search(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      criteria.validate();
+      pageRequest.validate();
+
+      return recipeSearchEngine.search(criteria, pageRequest);
+   }
+
+   // As search(), but without loading the instructions and ingredients of the recipes.
+   public RecipePage<RecipeSummary> searchSummaries(String text,
+      RecipeCategory category,
+      int nofServings,
+      Set<Ingredient> includeIngredients,
+      Set<Ingredient> excludeIngredients,
+      RecipePageRequest pageRequest) {
+
+      checkForOverlap(includeIngredients, excludeIngredients);
+
+      return searchSummaries(toCriteria(text, category, nofServings, includeIngredients, excludeIngredients),
+                             pageRequest);
+   }
 
-      var whereClause = clauses.isEmpty() ? "" : " where ";
-      var query = entityManager.createQuery(
-         "select distinct r from recipes r " +
-            " inner join recipe_ingredient  ri on r.id = ri.recipe " +
-            whereClause +
-            String.join(" and ", clauses) +
-            " order by r.name asc");
-      parameters.forEach(p -> query.setParameter(p.getKey(), p.getValue()));
+   public RecipePage<RecipeSummary> searchSummaries(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      criteria.validate();
+      pageRequest.validate();
 
-      return query.getResultList();
+      return recipeSearchEngine.searchSummaries(criteria, pageRequest);
+   }
+
+   // Pass all the matching recipes to the consumer, without keeping them in memory.
+   // Needs a transaction of its own if there's none yet, the results are read while the connection stays open.
+   @Transactional
+   public void scroll(String text,
+      RecipeCategory category,
+      int nofServings,
+      Set<Ingredient> includeIngredients,
+      Set<Ingredient> excludeIngredients,
+      Consumer<Recipe> consumer) {
+
+      checkForOverlap(includeIngredients, excludeIngredients);
+
+      scroll(toCriteria(text, category, nofServings, includeIngredients, excludeIngredients), consumer);
+   }
+
+   @Transactional
+   public void scroll(RecipeSearchCriteria criteria, Consumer<Recipe> consumer) {
+      criteria.validate();
+
+      recipeSearchEngine.scroll(criteria, consumer);
+   }
+
+   // Only called when a change didn't find the recipe, to tell which of the two it is.
+   private RuntimeException notFoundOrVersionMismatch(long id, @Nullable Long expectedVersion) {
+      var version = recipeRepository.findVersionById(id)
+                                    .orElseThrow(() -> new NoSuchElementException(
+                                       String.format("No recipe with id %d", id)));
+      return new OptimisticLockException(String.format("Recipe %d has version %d instead of %d",
+                                                       id, version, expectedVersion));
    }
 
    // Throw an exception if the two ingredient sets have overlapping members, which would give an empty result.
@@ -107,9 +181,24 @@ public class RecipeService {
       }
    }
 
-   private List<Long> extractIds(Set<Ingredient> ingredients) {
+   private RecipeSearchCriteria toCriteria(String text,
+      RecipeCategory category,
+      int nofServings,
+      Set<Ingredient> includeIngredients,
+      Set<Ingredient> excludeIngredients) {
+
+      return RecipeSearchCriteria.builder()
+                                 .text(text)
+                                 .category(category)
+                                 .nofServings(nofServings)
+                                 .includeIngredientIds(extractIds(includeIngredients))
+                                 .excludeIngredientIds(extractIds(excludeIngredients))
+                                 .build();
+   }
+
+   private static Set<Long> extractIds(Set<Ingredient> ingredients) {
       return ingredients.stream()
                         .map(Ingredient::getId)
-                        .toList();
+                        .collect(Collectors.toUnmodifiableSet());
    }
 }
@@ -0,0 +1,44 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import javax.validation.ValidationException;
+import java.util.Arrays;
+
+/*
+ * The recipe attributes search results can be ordered on, the recipe id is always used as the final tie-breaker.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum RecipeSortKey {
+   NAME("name"),
+   CATEGORY("category"),
+   NOF_SERVINGS("nofServings");
+
+   private final String property; // The name of the property in the api and in JPQL.
+
+   public Comparable<?> valueOf(RecipeSummary recipe) {
+      return switch (this) {
+         case NAME -> recipe.getName();
+         case CATEGORY -> recipe.getCategory();
+         case NOF_SERVINGS -> recipe.getNofServings();
+      };
+   }
+
+   // Convert the string representation of a value (e.g. in a continuation token) back into a value.
+   public Comparable<?> parseValue(String value) {
+      return switch (this) {
+         case NAME -> value;
+         case CATEGORY -> RecipeCategory.valueOf(value);
+         case NOF_SERVINGS -> Integer.valueOf(value);
+      };
+   }
+
+   public static RecipeSortKey fromProperty(String property) {
+      return Arrays.stream(values())
+                   .filter(key -> key.property.equals(property))
+                   .findFirst()
+                   .orElseThrow(() -> new ValidationException(String.format("Can't sort on '%s'", property)));
+   }
+}
@@ -0,0 +1,21 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Value;
+
+/*
+ * Sort on a single key in ascending or descending order.
+ */
+@Value
+public class RecipeSortOrder {
+
+   RecipeSortKey key;
+   boolean ascending;
+
+   public static RecipeSortOrder asc(RecipeSortKey key) {
+      return new RecipeSortOrder(key, true);
+   }
+
+   public static RecipeSortOrder desc(RecipeSortKey key) {
+      return new RecipeSortOrder(key, false);
+   }
+}
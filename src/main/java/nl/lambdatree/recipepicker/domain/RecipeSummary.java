@@ -0,0 +1,19 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Value;
+
+/*
+ * The attributes of a recipe without its instructions and ingredients, for listing recipes.
+ * Created directly by a query projection, so loading it doesn't touch the ingredient tables.
+ */
+@Value
+public class RecipeSummary {
+   Long id;
+   String name;
+   RecipeCategory category;
+   int nofServings;
+
+   public static RecipeSummary of(Recipe recipe) {
+      return new RecipeSummary(recipe.getId(), recipe.getName(), recipe.getCategory(), recipe.getNofServings());
+   }
+}
@@ -0,0 +1,16 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.Data;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+// Only used in queries, the terms are saved as part of a Recipe.
+@Data
+@Entity(name = "recipe_terms")
+public class RecipeTerm {
+   @Id
+   private long recipe;
+   private String term;
+   private int weight;
+}
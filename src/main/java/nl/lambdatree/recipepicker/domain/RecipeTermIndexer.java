@@ -0,0 +1,31 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.transaction.Transactional;
+
+/*
+ * Adds the full-text index of the recipes which were inserted directly into the database at startup.
+ * Recipes saved through the entity maintain their own index, see Recipe.indexTerms().
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RecipeTermIndexer {
+
+   private final RecipeRepository recipeRepository;
+
+   @EventListener(ApplicationReadyEvent.class)
+   @Transactional
+   public void indexMissingTerms() {
+      var recipes = recipeRepository.findWithoutTerms();
+      recipes.forEach(Recipe::indexTerms);
+      if (!recipes.isEmpty()) {
+         log.info("Indexed the terms of {} recipes", recipes.size());
+      }
+   }
+}
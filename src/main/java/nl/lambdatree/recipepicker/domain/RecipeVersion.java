@@ -0,0 +1,18 @@
+package nl.lambdatree.recipepicker.domain;
+
+/*
+ * The state of a recipe known to a search engine which keeps its own index, to ignore the RecipeChangedEvents which
+ * are handled out of order. A deletion keeps the version it deleted, so it comes after the change of that version.
+ */
+record RecipeVersion(long version, boolean deleted) {
+
+   static RecipeVersion of(RecipeChangedEvent event) {
+      return new RecipeVersion(event.getVersion(), event.getOperation() == RecipeChangedEvent.Operation.DELETED);
+   }
+
+   // Is the change older than this state, or the same change?
+   boolean supersedes(RecipeChangedEvent event) {
+      var other = of(event);
+      return other.version < version || other.version == version && (deleted || !other.deleted);
+   }
+}
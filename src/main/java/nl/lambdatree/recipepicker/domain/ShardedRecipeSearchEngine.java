@@ -0,0 +1,445 @@
+package nl.lambdatree.recipepicker.domain;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import javax.validation.ValidationException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/*
+ * Search engine which partitions the recipes over a number of shards, separate databases holding the searchable
+ * attributes of their part of the recipes: the recipes table without the versions, their ingredient ids and their
+ * full-text terms (see db/shard). The recipes are partitioned by id, or by category.
+ *
+ * A search is scattered over the shards which can hold matching recipes, each shard runs the query of the
+ * JpqlRecipeSearchEngine in parallel and returns at most limit + 1 summaries in the sort order, after the same cursor.
+ * The sorted results are gathered with a k-way merge, which keeps the first limit + 1 of them. Because every shard
+ * returns its own first recipes after the cursor, the merged page is the same as a page of a single database and its
+ * cursor works for the next page on all the shards. A search with a category only queries the shard of that category
+ * when partitioning by category.
+ *
+ * The recipes themselves stay in the primary database, which remains the system of record for the changes, the change
+ * log and the imports. Like the InMemoryRecipeSearchEngine only the matching recipes are loaded from it, and the shards
+ * are kept in sync using the RecipeChangedEvents after the transaction commits. Changes which bypass the
+ * RecipeService are only picked up by a rebuild().
+ *
+ * A change which fails to reach a shard doesn't fail the committed change, its recipe is retried with the next change
+ * and its shard search results are stale until then. The changes of a recipe are synced one at a time, and like the
+ * InMemoryRecipeSearchEngine a change which isn't newer than the last one of its recipe is ignored, as the listeners
+ * of concurrent commits can run out of order. So the version of every recipe, including the deleted ones, is kept
+ * in memory.
+ */
+@Slf4j
+public class ShardedRecipeSearchEngine implements RecipeSearchEngine {
+
+   private static final int REBUILD_PAGE_SIZE = 1000;
+   private static final int SCROLL_PAGE_SIZE = 500;
+   private static final int NOF_LOCKS = 64;
+
+   private static final String SELECT_SUMMARIES = "select r.id, r.name, r.category, r.nof_servings from recipes r";
+
+   public enum Partitioning {
+      ID,       /* Spread the recipes evenly over the shards. */
+      CATEGORY  /* Keep the recipes of a category together, a search with a category uses a single shard. */
+   }
+
+   private final EntityManager entityManager;
+   private final RecipeRepository recipeRepository;
+   private final List<Shard> shards;
+   private final Partitioning partitioning;
+
+   // Runs the queries on the shards in parallel, should have a thread for every shard of the concurrent searches.
+   private final Executor executor;
+
+   // The shard of every recipe when partitioning by category, where a change of the category moves it.
+   private final Map<Long, Integer> shardOfRecipe = new ConcurrentHashMap<>();
+
+   // The recipes of which a change didn't reach the shards.
+   private final Set<Long> unsynced = ConcurrentHashMap.newKeySet();
+
+   // The last change of every recipe, also when it failed to reach the shards.
+   private final Map<Long, RecipeVersion> versions = new ConcurrentHashMap<>();
+
+   // A recipe is synced while holding its lock, so its shard rows, shard and version change together.
+   private final Object[] locks = new Object[NOF_LOCKS];
+
+   // A database holding part of the recipes.
+   private record Shard(NamedParameterJdbcTemplate jdbc, TransactionTemplate transactions) {
+
+      static Shard of(DataSource dataSource) {
+         var transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+         // Also when the change of the primary database is committing, see onRecipeChanged().
+         transactions.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+         return new Shard(new NamedParameterJdbcTemplate(dataSource), transactions);
+      }
+   }
+
+   // The attributes of a recipe stored in a shard.
+   private record Document(long id, String name, String instructions, RecipeCategory category, int nofServings,
+                           Set<Long> ingredientIds) {
+
+      static Document of(Recipe recipe) {
+         return new Document(recipe.getId(), recipe.getName(), recipe.getInstructions(), recipe.getCategory(),
+                             recipe.getNofServings(), recipe.getIngredients()
+                                                          .stream()
+                                                          .map(Ingredient::getId)
+                                                          .collect(Collectors.toSet()));
+      }
+   }
+
+   // A matching recipe and its relevance, 0 if not ordered by relevance.
+   private record Hit(RecipeSummary summary, int score) {
+   }
+
+   // The sql of a shard query and its parameters.
+   private record Query(String sql, Map<String, Object> parameters, RowMapper<Hit> rowMapper) {
+   }
+
+   public ShardedRecipeSearchEngine(EntityManager entityManager, RecipeRepository recipeRepository,
+                                    List<DataSource> shards, Partitioning partitioning, Executor executor) {
+      if (shards.isEmpty()) {
+         throw new IllegalArgumentException("There should be at least one shard");
+      }
+      this.entityManager = entityManager;
+      this.recipeRepository = recipeRepository;
+      this.shards = shards.stream().map(Shard::of).toList();
+      this.partitioning = partitioning;
+      this.executor = executor;
+      Arrays.setAll(locks, i -> new Object());
+   }
+
+   @Override
+   public RecipePage<Recipe> search(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      var ids = find(criteria, pageRequest).stream()
+                                           .map(hit -> hit.summary().getId())
+                                           .toList();
+      return RecipePage.of(RecipeLoading.loadInOrder(recipeRepository, ids), pageRequest, RecipeSummary::of);
+   }
+
+   @Override
+   public RecipePage<RecipeSummary> searchSummaries(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      // The summaries come from the shards, without touching the primary database.
+      var summaries = find(criteria, pageRequest).stream()
+                                                 .map(Hit::summary)
+                                                 .toList();
+      return RecipePage.of(summaries, pageRequest, summary -> summary);
+   }
+
+   @Override
+   public void scroll(RecipeSearchCriteria criteria, Consumer<Recipe> consumer) {
+      var pageRequest = RecipePageRequest.builder()
+                                         .limit(SCROLL_PAGE_SIZE)
+                                         .build();
+      do {
+         var page = search(criteria, pageRequest);
+         page.getRecipes().forEach(consumer);
+         entityManager.clear(); // Detach the recipes of this page.
+         pageRequest = page.getNext() == null ? null : pageRequest.toBuilder().after(page.getNext()).build();
+      } while (pageRequest != null);
+   }
+
+   // The matching recipes of all the shards, at most limit + 1 in the order of the page request.
+   private List<Hit> find(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      // Fetch one extra result to find out if there is a next page.
+      var limit = pageRequest.getLimit() == Integer.MAX_VALUE ? Integer.MAX_VALUE : pageRequest.getLimit() + 1;
+      var query = pageRequest.isByRelevance() ? relevanceQuery(criteria, limit) : query(criteria, pageRequest, limit);
+      var comparator = pageRequest.isByRelevance() ? RELEVANCE : comparator(pageRequest.getSort());
+
+      var targets = shardsFor(criteria);
+      if (targets.size() == 1) {
+         return targets.get(0).jdbc().query(query.sql(), query.parameters(), query.rowMapper());
+      }
+      var futures = targets.stream()
+                           .map(shard -> CompletableFuture.supplyAsync(
+                              () -> shard.jdbc().query(query.sql(), query.parameters(), query.rowMapper()), executor))
+                           .toList();
+      return merge(futures.stream().map(ShardedRecipeSearchEngine::join).toList(), comparator, limit);
+   }
+
+   private List<Shard> shardsFor(RecipeSearchCriteria criteria) {
+      if (partitioning == Partitioning.CATEGORY && criteria.hasCategory()) {
+         return List.of(shards.get(shardOf(criteria.getCategory())));
+      }
+      return shards;
+   }
+
+   // The recipes after the cursor in the sort order of the page request.
+   private static Query query(RecipeSearchCriteria criteria, RecipePageRequest pageRequest, int limit) {
+      var where = RecipeSearchSql.where(criteria).after(pageRequest.getAfter(), pageRequest.getSort());
+      var parameters = new HashMap<>(where.getParameters());
+      var sql = SELECT_SUMMARIES + " where " + where.clause() +
+         " order by " + RecipeSearchSql.orderBy(pageRequest.getSort()) + limit(limit, parameters);
+      return new Query(sql, parameters, (resultSet, row) -> new Hit(toSummary(resultSet), 0));
+   }
+
+   // The recipes ordered by the sum of the weights of the matching terms, like the JpqlRecipeSearchEngine.
+   private static Query relevanceQuery(RecipeSearchCriteria criteria, int limit) {
+      if (!criteria.hasText() || criteria.getTextMode() != TextMode.FULL_TEXT) {
+         throw new ValidationException("Ordering by relevance needs a full-text search");
+      }
+      var where = RecipeSearchSql.where(criteria);
+      var parameters = new HashMap<>(where.getParameters());
+      parameters.put("allStems", criteria.getTextStems()
+                                         .stream()
+                                         .flatMap(Set::stream)
+                                         .collect(Collectors.toSet()));
+      var sql = "select r.id, r.name, r.category, r.nof_servings, sum(rt.weight) from recipes r " +
+         "join recipe_terms rt on rt.recipe = r.id where rt.term in (:allStems) and " + where.clause() +
+         " group by r.id, r.name, r.category, r.nof_servings order by sum(rt.weight) desc, r.id asc" +
+         limit(limit, parameters);
+      return new Query(sql, parameters, (resultSet, row) -> new Hit(toSummary(resultSet), resultSet.getInt(5)));
+   }
+
+   private static String limit(int limit, Map<String, Object> parameters) {
+      if (limit == Integer.MAX_VALUE) {
+         return "";
+      }
+      parameters.put("limit", limit);
+      return " limit :limit";
+   }
+
+   // Merge the sorted results of the shards into the first limit results. Only the current heads of the results are
+   // kept in the priority queue, so a merge takes O(limit * log(shards)) comparisons.
+   static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> comparator, int limit) {
+      var heads = new PriorityQueue<Head<T>>(Math.max(1, sorted.size()),
+                                             (a, b) -> comparator.compare(a.value(), b.value()));
+      var total = 0;
+      for (var results : sorted) {
+         var iterator = results.iterator();
+         if (iterator.hasNext()) {
+            heads.add(new Head<>(iterator.next(), iterator));
+         }
+         total += results.size();
+      }
+      var merged = new ArrayList<T>(Math.min(total, limit));
+      while (merged.size() < limit && !heads.isEmpty()) {
+         var head = heads.poll();
+         merged.add(head.value());
+         if (head.rest().hasNext()) {
+            heads.add(new Head<>(head.rest().next(), head.rest()));
+         }
+      }
+      return merged;
+   }
+
+   // The smallest result of a shard which isn't merged yet, and the results after it.
+   private record Head<T>(T value, Iterator<T> rest) {
+   }
+
+   // Descending relevance, the most relevant recipes first.
+   private static final Comparator<Hit> RELEVANCE = Comparator.comparingInt(Hit::score)
+                                                              .reversed()
+                                                              .thenComparingLong(hit -> hit.summary().getId());
+
+   // The same order as the shard queries, the category is stored as its ordinal which orders like the enum.
+   private static Comparator<Hit> comparator(List<RecipeSortOrder> sort) {
+      Comparator<Hit> comparator = (a, b) -> 0;
+      for (var order : sort) {
+         var key = order.getKey();
+         Comparator<Hit> byKey = (a, b) -> compare(key.valueOf(a.summary()), key.valueOf(b.summary()));
+         comparator = comparator.thenComparing(order.isAscending() ? byKey : byKey.reversed());
+      }
+      return comparator.thenComparingLong(hit -> hit.summary().getId());
+   }
+
+   @SuppressWarnings({"unchecked", "rawtypes"})
+   private static int compare(Comparable a, Comparable b) {
+      return a.compareTo(b);
+   }
+
+   // Rethrow the exception of a shard query as is, e.g. a DataAccessException.
+   private static <T> T join(CompletableFuture<T> future) {
+      try {
+         return future.join();
+      } catch (CompletionException e) {
+         if (e.getCause() instanceof RuntimeException cause) {
+            throw cause;
+         }
+         throw e;
+      }
+   }
+
+   private int shardOf(Document document) {
+      return switch (partitioning) {
+         case ID -> shardOf(document.id());
+         case CATEGORY -> shardOf(document.category());
+      };
+   }
+
+   // The ids are allocated sequentially in blocks, so the remainder spreads them evenly.
+   private int shardOf(long id) {
+      return Math.floorMod(id, shards.size());
+   }
+
+   private int shardOf(RecipeCategory category) {
+      return category.ordinal() % shards.size();
+   }
+
+   @Override
+   public void rebuild() {
+      // Removes the ingredients and terms of the recipes as well.
+      shards.forEach(shard -> shard.transactions().executeWithoutResult(
+         status -> shard.jdbc().getJdbcOperations().update("delete from recipes")));
+      shardOfRecipe.clear();
+      unsynced.clear();
+      versions.clear();
+
+      // Page through the recipes by id, so only a page of instructions is in memory at a time.
+      var lastId = Long.MIN_VALUE;
+      var nofRecipes = 0;
+      List<Object[]> page;
+      do {
+         page = entityManager.createQuery(
+                                "select r.id, r.version, r.name, r.instructions, r.category, r.nofServings " +
+                                   "from recipes r where r.id > :lastId order by r.id", Object[].class)
+                             .setParameter("lastId", lastId)
+                             .setMaxResults(REBUILD_PAGE_SIZE)
+                             .getResultList();
+         if (!page.isEmpty()) {
+            var recipeIds = page.stream().map(row -> (Long) row[0]).toList();
+            var ingredientIds = RecipeLoading.loadIngredientIds(entityManager, recipeIds);
+            var documents = page.stream()
+                                .map(row -> new Document((Long) row[0], (String) row[2], (String) row[3],
+                                                         (RecipeCategory) row[4], (Integer) row[5],
+                                                         ingredientIds.getOrDefault((Long) row[0], Set.of())))
+                                .collect(Collectors.groupingBy(this::shardOf));
+            page.forEach(row -> versions.put((Long) row[0], new RecipeVersion((Long) row[1], false)));
+            documents.forEach((shard, shardDocuments) -> {
+               shards.get(shard).transactions().executeWithoutResult(
+                  status -> insert(shards.get(shard), shardDocuments));
+               if (partitioning == Partitioning.CATEGORY) {
+                  shardDocuments.forEach(document -> shardOfRecipe.put(document.id(), shard));
+               }
+            });
+            nofRecipes += page.size();
+            lastId = (Long) page.get(page.size() - 1)[0];
+         }
+      } while (page.size() == REBUILD_PAGE_SIZE);
+
+      log.info("Partitioned {} recipes by {} over {} shards", nofRecipes, partitioning, shards.size());
+   }
+
+   @Override
+   @TransactionalEventListener(fallbackExecution = true)
+   public void onRecipeChanged(RecipeChangedEvent event) {
+      retryUnsynced();
+      var id = event.getRecipeId();
+      synchronized (lockOf(id)) {
+         var known = versions.get(id);
+         if (known != null && known.supersedes(event)) {
+            log.debug("Ignoring version {} of recipe {}, already at {}", event.getVersion(), id, known);
+            return;
+         }
+         versions.put(id, RecipeVersion.of(event));
+         var recipe = event.getRecipe();
+         sync(id, recipe == null ? null : Document.of(recipe));
+      }
+   }
+
+   // Sync the current state of the recipes of which a change failed, until a shard fails again. The state is read
+   // while holding the lock of the recipe, so it is at least as new as any change which is synced.
+   private void retryUnsynced() {
+      for (var id : List.copyOf(unsynced)) {
+         synchronized (lockOf(id)) {
+            if (!unsynced.contains(id)) {
+               continue;
+            }
+            var recipe = recipeRepository.findById(id);
+            recipe.ifPresent(current -> versions.put(id, new RecipeVersion(current.getVersion(), false)));
+            if (!sync(id, recipe.map(Document::of).orElse(null))) {
+               return;
+            }
+         }
+      }
+   }
+
+   private Object lockOf(long id) {
+      return locks[Math.floorMod(Long.hashCode(id), NOF_LOCKS)];
+   }
+
+   // Remove the recipe from the shard it is in and insert its new state (null if deleted) in the shard it belongs to,
+   // false if a shard failed. Must be called while holding the lock of the recipe.
+   private boolean sync(long id, @Nullable Document document) {
+      try {
+         var from = partitioning == Partitioning.ID ? Integer.valueOf(shardOf(id)) : shardOfRecipe.get(id);
+         var to = document == null ? null : shardOf(document);
+         if (from != null) {
+            var shard = shards.get(from);
+            shard.transactions().executeWithoutResult(status -> {
+               shard.jdbc().update("delete from recipes where id = :id", Map.of("id", id));
+               if (from.equals(to)) {
+                  insert(shard, List.of(document));
+               }
+            });
+            shardOfRecipe.remove(id);
+         }
+         if (to != null && !to.equals(from)) {
+            var shard = shards.get(to);
+            shard.transactions().executeWithoutResult(status -> insert(shard, List.of(document)));
+         }
+         if (to != null && partitioning == Partitioning.CATEGORY) {
+            shardOfRecipe.put(id, to);
+         }
+         unsynced.remove(id);
+         return true;
+      } catch (RuntimeException e) {
+         log.warn("Recipe {} is not in sync with the shards, retrying it with the next change", id, e);
+         unsynced.add(id);
+         return false;
+      }
+   }
+
+   // Insert the documents with a jdbc batch per table.
+   private static void insert(Shard shard, Collection<Document> documents) {
+      var recipes = new ArrayList<Object[]>(documents.size());
+      var ingredients = new ArrayList<Object[]>();
+      var terms = new ArrayList<Object[]>();
+      for (var document : documents) {
+         // Recipes without ingredients are never found.
+         if (document.ingredientIds().isEmpty()) {
+            continue;
+         }
+         recipes.add(new Object[]{document.id(), document.name(), document.instructions(),
+            document.category().ordinal(), document.nofServings()});
+         document.ingredientIds().forEach(ingredientId -> ingredients.add(new Object[]{document.id(), ingredientId}));
+         TextAnalyzer.weights(document.name(), document.instructions())
+                     .forEach((term, weight) -> terms.add(new Object[]{document.id(), term, weight}));
+      }
+      var jdbc = shard.jdbc().getJdbcOperations();
+      jdbc.batchUpdate("insert into recipes (id, name, instructions, category, nof_servings) values (?, ?, ?, ?, ?)",
+                       recipes);
+      jdbc.batchUpdate("insert into recipe_ingredient (recipe, ingredient) values (?, ?)", ingredients);
+      jdbc.batchUpdate("insert into recipe_terms (recipe, term, weight) values (?, ?, ?)", terms);
+   }
+
+   private static RecipeSummary toSummary(ResultSet resultSet) throws SQLException {
+      // Stored as the ordinal, like the Recipe entity does.
+      return new RecipeSummary(resultSet.getLong(1), resultSet.getString(2),
+                               RecipeCategory.values()[resultSet.getInt(3)], resultSet.getInt(4));
+   }
+}
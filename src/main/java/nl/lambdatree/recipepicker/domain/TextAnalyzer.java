@@ -0,0 +1,72 @@
+package nl.lambdatree.recipepicker.domain;
+
+import org.tartarus.snowball.SnowballStemmer;
+import org.tartarus.snowball.ext.DutchStemmer;
+import org.tartarus.snowball.ext.EnglishStemmer;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/*
+ * Splits texts into terms for the full-text search.
+ *
+ * The language of a recipe is unknown, so every token is stemmed for both English and Dutch. A token of the query
+ * matches a recipe if one of its stems is a stem of the recipe.
+ */
+public final class TextAnalyzer {
+
+   // Terms in the name weigh more for the relevance than terms in the instructions.
+   public static final int NAME_WEIGHT = 3;
+   public static final int INSTRUCTIONS_WEIGHT = 1;
+
+   // Must fit the term column of the recipe_terms table.
+   public static final int MAX_TERM_LENGTH = 64;
+
+   private static final Pattern TERM_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+   private TextAnalyzer() {
+   }
+
+   // The stems of every token in the text, in the order of the tokens.
+   public static List<Set<String>> analyze(String text) {
+      // The stemmers keep state, so aren't shared between threads.
+      var english = new EnglishStemmer();
+      var dutch = new DutchStemmer();
+      return TERM_SEPARATOR.splitAsStream(text.toLowerCase(Locale.ROOT))
+                           .filter(token -> !token.isEmpty())
+                           .map(token -> {
+                              var stems = new LinkedHashSet<String>(2);
+                              stems.add(stem(english, token));
+                              stems.add(stem(dutch, token));
+                              return (Set<String>) stems;
+                           })
+                           .toList();
+   }
+
+   // The weight of every stem in the name and instructions of a recipe, the sum of the weights of its occurrences.
+   public static Map<String, Integer> weights(String name, String instructions) {
+      var weights = new HashMap<String, Integer>();
+      addWeights(weights, name, NAME_WEIGHT);
+      addWeights(weights, instructions, INSTRUCTIONS_WEIGHT);
+      return weights;
+   }
+
+   private static void addWeights(Map<String, Integer> weights, String text, int weight) {
+      if (text == null) {
+         return;
+      }
+      analyze(text).forEach(stems -> stems.forEach(stem -> weights.merge(stem, weight, Integer::sum)));
+   }
+
+   private static String stem(SnowballStemmer stemmer, String token) {
+      stemmer.setCurrent(token);
+      stemmer.stem();
+      var stem = stemmer.getCurrent();
+      return stem.length() > MAX_TERM_LENGTH ? stem.substring(0, MAX_TERM_LENGTH) : stem;
+   }
+}
@@ -0,0 +1,9 @@
+package nl.lambdatree.recipepicker.domain;
+
+/*
+ * How the text of a search is matched against the name and instructions of a recipe.
+ */
+public enum TextMode {
+   SUBSTRING, /* Case-insensitive substring of the name or instructions, the original search. */
+   FULL_TEXT  /* Every word of the text, or a word with the same (English or Dutch) stem, is in the recipe. */
+}
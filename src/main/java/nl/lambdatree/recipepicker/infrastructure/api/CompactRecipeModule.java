@@ -0,0 +1,56 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import nl.lambdatree.recipepicker.domain.Ingredient;
+
+import java.io.IOException;
+
+/*
+ * The compact encoding of the recipes, for the binary (CBOR) representation of the API: the ingredients of a recipe
+ * are written and read as their ids only, as the ingredient names repeat in every recipe. The ingredients themselves
+ * (the api Ingredient) keep their names, a client fetches them once from /v1/ingredients as the dictionary for the
+ * ids, and only again when its ETag changes.
+ */
+public class CompactRecipeModule extends SimpleModule {
+
+   public CompactRecipeModule() {
+      super(CompactRecipeModule.class.getSimpleName());
+      addSerializer(new RecipeJsonSerializer(true));
+      addSerializer(new IngredientIdSerializer());
+      addDeserializer(Ingredient.class, new IngredientIdDeserializer());
+   }
+
+   private static class IngredientIdSerializer extends StdSerializer<Ingredient> {
+
+      IngredientIdSerializer() {
+         super(Ingredient.class);
+      }
+
+      @Override
+      public void serialize(Ingredient ingredient, JsonGenerator generator, SerializerProvider provider)
+         throws IOException {
+         generator.writeNumber(ingredient.getId());
+      }
+   }
+
+   private static class IngredientIdDeserializer extends StdDeserializer<Ingredient> {
+
+      IngredientIdDeserializer() {
+         super(Ingredient.class);
+      }
+
+      // Like the json of a new recipe, only the id of an ingredient is used.
+      @Override
+      public Ingredient deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+         return Ingredient.builder()
+                          .id(parser.getValueAsLong())
+                          .build();
+      }
+   }
+}
@@ -0,0 +1,68 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.lambdatree.recipepicker.domain.RecipeCursor;
+import nl.lambdatree.recipepicker.domain.RecipeSortOrder;
+
+import javax.validation.ValidationException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/*
+ * Opaque token for fetching the next page of search results, it encodes the position of the last recipe of the
+ * previous page (the cursor) together with the sort order it was created for.
+ */
+public class ContinuationToken {
+
+   public static final String HEADER = "X-Continuation-Token";
+
+   private static final ObjectMapper MAPPER = new ObjectMapper();
+
+   private record Payload(String sort, List<String> values, long id) {
+   }
+
+   private ContinuationToken() {
+   }
+
+   public static String encode(String sort, RecipeCursor cursor) {
+      var values = cursor.getValues()
+                         .stream()
+                         .map(Object::toString)
+                         .toList();
+      try {
+         var json = MAPPER.writeValueAsBytes(new Payload(sort, values, cursor.getId()));
+         return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+      } catch (JsonProcessingException e) {
+         throw new IllegalStateException("Can't encode continuation token", e);
+      }
+   }
+
+   // Decode a token, it is only valid for the same sort order as the one it was created for. The token comes from the
+   // client, so anything which isn't a complete payload is invalid.
+   public static RecipeCursor decode(String token, String sort, List<RecipeSortOrder> sortOrders) {
+      try {
+         var payload = MAPPER.readValue(Base64.getUrlDecoder().decode(token), Payload.class);
+         if (payload == null || payload.sort() == null || payload.values() == null ||
+            payload.values().contains(null)) {
+            throw invalid(token);
+         }
+         if (!sort.equals(payload.sort()) || payload.values().size() != sortOrders.size()) {
+            throw new ValidationException("The continuation token doesn't match the sort parameter");
+         }
+         var values = new ArrayList<Comparable<?>>(sortOrders.size());
+         for (int i = 0; i < sortOrders.size(); i++) {
+            values.add(sortOrders.get(i).getKey().parseValue(payload.values().get(i)));
+         }
+         return new RecipeCursor(values, payload.id());
+      } catch (IllegalArgumentException | IOException e) {
+         throw invalid(token);
+      }
+   }
+
+   private static ValidationException invalid(String token) {
+      return new ValidationException(String.format("Invalid continuation token '%s'", token));
+   }
+}
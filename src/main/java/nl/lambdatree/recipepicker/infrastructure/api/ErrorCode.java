@@ -1,5 +1,5 @@
 package nl.lambdatree.recipepicker.infrastructure.api;
 
 public enum ErrorCode {
-   INVALID_PARAM, ENTITY_NOT_FOUND, UNKNOWN
+   INVALID_PARAM, ENTITY_NOT_FOUND, VERSION_MISMATCH, UNKNOWN
 }
@@ -1,12 +1,16 @@
 package nl.lambdatree.recipepicker.infrastructure.api;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import javax.persistence.OptimisticLockException;
 import javax.validation.ValidationException;
 import java.sql.SQLException;
 import java.util.NoSuchElementException;
@@ -33,7 +37,20 @@ public class ExceptionHandlers {
                                   .errorCode(ErrorCode.ENTITY_NOT_FOUND)
                                   .details(e.getMessage())
                                   .build();
-      return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+      return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                           .contentType(MediaType.APPLICATION_JSON)
+                           .body(response);
+   }
+
+   // A conditional update or delete of a recipe which changed in the meantime.
+   @ExceptionHandler
+   public ResponseEntity<ErrorResponse> handle(OptimisticLockException e) {
+      return preconditionFailed(e);
+   }
+
+   @ExceptionHandler
+   public ResponseEntity<ErrorResponse> handle(OptimisticLockingFailureException e) {
+      return preconditionFailed(e);
    }
 
    // Will catch SQL constraint violations, e.g. passing in a non-existing ingredient.
@@ -42,13 +59,32 @@ public class ExceptionHandlers {
       return badRequest(e);
    }
 
+   // The same, from the jdbc statements of a recipe update.
+   @ExceptionHandler
+   public ResponseEntity<ErrorResponse> handle(DataIntegrityViolationException e) {
+      return badRequest(e);
+   }
+
+   private ResponseEntity<ErrorResponse> preconditionFailed(Exception e) {
+      log.info("Precondition failed: {}", e.getMessage());
+      var response = ErrorResponse.builder()
+                                  .errorCode(ErrorCode.VERSION_MISMATCH)
+                                  .details(e.getMessage())
+                                  .build();
+      return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                           .contentType(MediaType.APPLICATION_JSON)
+                           .body(response);
+   }
+
    private ResponseEntity<ErrorResponse> badRequest(Exception e) {
       log.info("Bad request: {}", e.getMessage());
       var response = ErrorResponse.builder()
                                   .errorCode(ErrorCode.INVALID_PARAM)
                                   .details(e.getMessage())
                                   .build();
+      // Always respond with json, also when the request accepts another format (like newline delimited json).
       return ResponseEntity.badRequest()
+                           .contentType(MediaType.APPLICATION_JSON)
                            .body(response);
 
    }
@@ -0,0 +1,35 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/*
+ * The outcome of a recipe import, with a result for every record in the order of the request.
+ */
+@Data
+@Builder
+public class ImportReport {
+   private int created;
+   private int rejected;
+   private List<Result> results;
+
+   public enum Status {
+      CREATED,  /* Inserted, the result has the id of the new recipe. */
+      INVALID,  /* Not a valid recipe, nothing was inserted. */
+      FAILED    /* Valid, but the database rejected the batch containing this record. */
+   }
+
+   @Data
+   @Builder
+   public static class Result {
+      private int index; // Position of the record in the request, starting at 0.
+      private Status status;
+      @Nullable
+      private Long id;
+      @Nullable
+      private String message;
+   }
+}
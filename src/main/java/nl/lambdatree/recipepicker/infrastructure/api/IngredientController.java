@@ -12,39 +12,64 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.lambdatree.recipepicker.domain.IngredientCatalogue;
 import nl.lambdatree.recipepicker.domain.IngredientRepository;
 import nl.lambdatree.recipepicker.infrastructure.configuration.RecipePickerProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import javax.transaction.Transactional;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.util.List;
-import java.util.stream.StreamSupport;
 
 @Validated
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Transactional
-@RequestMapping(path = "/v1/ingredients", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequestMapping(path = "/v1/ingredients",
+   produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
 @RequiredArgsConstructor
 @Slf4j
 public class IngredientController {
 
    private final IngredientRepository ingredientRepository;
+   private final IngredientCatalogue ingredientCatalogue;
    private final RecipePickerProperties recipePickerProperties;
 
+   @Transactional(readOnly = true)
    @GetMapping
-   @Operation(description = "List all ingredients available for creating a recipe.")
-   public List<Ingredient> getAll() {
-      return StreamSupport.stream(ingredientRepository.findAll().spliterator(), false)
-                          .map(Ingredient::fromDomain)
-                          .toList();
+   @Operation(description = "List all ingredients available for creating a recipe, ordered by id. " +
+      "Pass the ETag of a previous response in the If-None-Match header to only receive the list when it changed.")
+   @ApiResponses({
+      @ApiResponse(responseCode = "200", description = "The current ingredients.",
+         headers = {
+            @Header(name = "ETag", description = "Identifies this version of the list.")
+         }),
+      @ApiResponse(responseCode = "304", description = "The ingredients didn't change since the supplied ETag.")
+   })
+   public ResponseEntity<List<Ingredient>> getAll(WebRequest request) {
+      var snapshot = ingredientCatalogue.getSnapshot();
+      if (request.checkNotModified(snapshot.getETag())) {
+         return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                              .eTag(snapshot.getETag())
+                              .build();
+      }
+      return ResponseEntity.ok()
+                           .eTag(snapshot.getETag())
+                           .body(snapshot.getIngredients()
+                                         .stream()
+                                         .map(Ingredient::fromDomain)
+                                         .toList());
    }
 
+   @Transactional(readOnly = true)
    @Operation(description = "Fetch an ingredient by its id.")
    @ApiResponses( {
       @ApiResponse(responseCode = "200", description = "Successful retrieval."),
@@ -53,8 +78,7 @@ public class IngredientController {
    })
    @GetMapping(path = "/{id}")
    public ResponseEntity<Ingredient> get(@NotNull @PathVariable Long id) {
-      var found = ingredientRepository.findById(id)
-                                      .orElseThrow(); // Use the exception handler to construct the response.
+      var found = ingredientCatalogue.getById(id); // Use the exception handler to construct the response.
       return ResponseEntity.ok(Ingredient.fromDomain(found));
    }
 
@@ -0,0 +1,19 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.lang.Nullable;
+
+import java.util.Set;
+
+/*
+ * The ingredient ids to add to and remove from a recipe, the other ingredients of the recipe stay as they are.
+ */
+@Data
+@Builder
+public class IngredientsPatch {
+   @Nullable
+   private Set<Long> add;
+   @Nullable
+   private Set<Long> remove;
+}
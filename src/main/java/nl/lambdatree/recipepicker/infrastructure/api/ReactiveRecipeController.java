@@ -0,0 +1,108 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import nl.lambdatree.recipepicker.domain.ReactiveRecipeRepository;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.TextMode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+
+/*
+ * The read only recipe API of the reactive stack, served instead of the /v1 API when the application runs on WebFlux
+ * (the "reactive" profile). The parameters and responses are those of the RecipeController.
+ *
+ * A search streams all the matching recipes (or up to the limit) instead of returning a page. With newline delimited
+ * json the recipes are read from the database as the client consumes them; a json array is collected before it is
+ * written, so without a limit it only gets the default page size of the /v1 API.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping(path = "/v2/recipes")
+@RequiredArgsConstructor
+public class ReactiveRecipeController {
+
+   private final ReactiveRecipeRepository reactiveRecipeRepository;
+
+   private final SearchParameters searchParameters;
+
+   @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+   @Operation(description = "Retrieve the recipe at the supplied id, with its version in the ETag header.")
+   public Mono<ResponseEntity<Recipe>> getRecipe(@PathVariable long id) {
+      return reactiveRecipeRepository.findById(id)
+                                     .switchIfEmpty(Mono.error(() -> new NoSuchElementException(
+                                        String.format("No recipe with id %d", id))))
+                                     .map(recipe -> ResponseEntity.ok()
+                                                                  .eTag(RecipeETag.of(recipe.getVersion()))
+                                                                  .body(Recipe.fromDomain(recipe)));
+   }
+
+   @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+   @Operation(description = "Search for recipes with the criteria of the /v1 search, ordered by name. Returns all " +
+      "the matching recipes, or the first ones up to the limit.")
+   public Flux<Recipe> search(
+      @Nullable @RequestParam String text,
+      @Nullable @RequestParam TextMode textMode,
+      @Nullable @RequestParam RecipeCategory recipeCategory,
+      @Nullable @RequestParam Integer nofServings,
+      @Nullable @RequestParam Long[] includeIngredientIds,
+      @Nullable @RequestParam Long[] excludeIngredientIds,
+      @Nullable @RequestParam Integer limit,
+      ServerHttpRequest request) {
+
+      var criteria = searchParameters.toCriteria(text, textMode, recipeCategory, nofServings, includeIngredientIds,
+                                                 excludeIngredientIds);
+      return reactiveRecipeRepository.search(criteria, toLimit(limit, request))
+                                     .map(Recipe::fromDomain);
+   }
+
+   @GetMapping(path = "/summaries", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+   @Operation(description = "Search for recipes like the search above, but only return the id, name, category and " +
+      "number of servings of each recipe.")
+   public Flux<RecipeSummary> searchSummaries(
+      @Nullable @RequestParam String text,
+      @Nullable @RequestParam TextMode textMode,
+      @Nullable @RequestParam RecipeCategory recipeCategory,
+      @Nullable @RequestParam Integer nofServings,
+      @Nullable @RequestParam Long[] includeIngredientIds,
+      @Nullable @RequestParam Long[] excludeIngredientIds,
+      @Nullable @RequestParam Integer limit,
+      ServerHttpRequest request) {
+
+      var criteria = searchParameters.toCriteria(text, textMode, recipeCategory, nofServings, includeIngredientIds,
+                                                 excludeIngredientIds);
+      return reactiveRecipeRepository.searchSummaries(criteria, toLimit(limit, request))
+                                     .map(RecipeSummary::fromDomain);
+   }
+
+   // Without a limit all the matching recipes are streamed as newline delimited json. A wildcard doesn't ask for a
+   // stream, the json array it may get is collected in memory.
+   private int toLimit(@Nullable Integer limit, ServerHttpRequest request) {
+      return limit == null && acceptsStream(request) ? Integer.MAX_VALUE : searchParameters.toLimit(limit);
+   }
+
+   // Is newline delimited json preferred over json by the accept header?
+   private static boolean acceptsStream(ServerHttpRequest request) {
+      var accept = new ArrayList<>(request.getHeaders().getAccept());
+      MediaType.sortBySpecificityAndQuality(accept);
+      return accept.stream()
+                   .filter(type -> type.isCompatibleWith(MediaType.APPLICATION_NDJSON) ||
+                      type.isCompatibleWith(MediaType.APPLICATION_JSON))
+                   .findFirst()
+                   .map(type -> type.equalsTypeAndSubtype(MediaType.APPLICATION_NDJSON))
+                   .orElse(false);
+   }
+}
@@ -1,7 +1,9 @@
 package nl.lambdatree.recipepicker.infrastructure.api;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import nl.lambdatree.recipepicker.domain.Ingredient;
 import nl.lambdatree.recipepicker.domain.RecipeCategory;
 import org.springframework.lang.Nullable;
@@ -34,6 +36,11 @@ public class Recipe {
    @NotEmpty
    private Set<Ingredient> ingredients;
 
+   // Sent as the ETag header instead of in the body, see RecipeETag.
+   @JsonIgnore
+   @EqualsAndHashCode.Exclude
+   private long version;
+
    public static Recipe fromDomain(nl.lambdatree.recipepicker.domain.Recipe from) {
       return Recipe.builder()
                    .id(from.getId())
@@ -41,7 +48,8 @@ public class Recipe {
                    .instructions(from.getInstructions())
                    .category(from.getCategory())
                    .nofServings(from.getNofServings())
-                   .ingredients(from.getIngredients())
+                   .ingredients(Set.copyOf(from.getIngredients())) // Don't hold on to a lazy collection of the session.
+                   .version(from.getVersion())
                    .build();
    }
 
@@ -0,0 +1,16 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/*
+ * The recipes of a batch get, in the order of the requested ids, and the requested ids without a recipe.
+ */
+@Data
+@Builder
+public class RecipeBatch {
+   private List<Recipe> recipes;
+   private List<Long> missingIds;
+}
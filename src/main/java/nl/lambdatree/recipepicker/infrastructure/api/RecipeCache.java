@@ -0,0 +1,73 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import nl.lambdatree.recipepicker.domain.RecipeChangedEvent;
+import nl.lambdatree.recipepicker.infrastructure.configuration.RecipePickerProperties;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+ * Cache of the recipe DTOs returned by the get recipe call, as a small set of popular recipes gets most of the traffic.
+ *
+ * Bounded by the approximate memory used by the recipes, Caffeine evicts using W-TinyLFU, so recipes which are
+ * requested often stay in the cache. Entries are invalidated after a recipe is updated or deleted by the
+ * RecipeService. The hit / miss / eviction counts are available as the "cache.*" metrics with cache=recipes.
+ */
+@Component
+public class RecipeCache {
+
+   private final Cache<Long, Recipe> cache;
+
+   public RecipeCache(RecipePickerProperties recipePickerProperties, MeterRegistry meterRegistry) {
+      var properties = recipePickerProperties.getRecipeCache();
+      cache = Caffeine.newBuilder()
+                      .maximumWeight(properties.getCapacity().toBytes())
+                      .weigher((Long id, Recipe recipe) -> sizeInBytes(recipe))
+                      .expireAfterWrite(properties.getTimeToLive())
+                      .recordStats()
+                      .build();
+      CaffeineCacheMetrics.monitor(meterRegistry, cache, "recipes");
+   }
+
+   // Return the cached recipe, or the recipe from the loader which is then cached. Exceptions of the loader are
+   // passed on, without caching anything.
+   public Recipe get(long id, Function<Long, Recipe> loader) {
+      return cache.get(id, loader);
+   }
+
+   // The cached recipe, without counting a hit or miss: only get() calls which return the recipe to the client are
+   // in the hit ratio.
+   @Nullable
+   public Recipe peek(long id) {
+      return cache.asMap().get(id);
+   }
+
+   // As get(), for several recipes: the recipes which aren't cached are passed to the loader in a single call.
+   // Ids without a recipe from the loader are absent from the result.
+   public Map<Long, Recipe> getAll(Iterable<Long> ids, Function<Iterable<? extends Long>, Map<Long, Recipe>> loader) {
+      return cache.getAll(ids, loader);
+   }
+
+   // Invalidated after the commit, a concurrent load of the old recipe is either finished and then removed, or
+   // starts after the commit and sees the new recipe.
+   @TransactionalEventListener(fallbackExecution = true)
+   public void onRecipeChanged(RecipeChangedEvent event) {
+      cache.invalidate(event.getRecipeId());
+   }
+
+   // Rough estimate of the heap used by a recipe, strings count two bytes per character.
+   private static int sizeInBytes(Recipe recipe) {
+      var size = 64 + 2 * (recipe.getName().length() + recipe.getInstructions().length());
+      for (var ingredient : recipe.getIngredients()) {
+         size += 48 + 2 * ingredient.getName().length();
+      }
+      return size;
+   }
+}
@@ -0,0 +1,82 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import nl.lambdatree.recipepicker.domain.RecipeChangeLog;
+import nl.lambdatree.recipepicker.infrastructure.configuration.RecipePickerProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.ValidationException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Feed of the changes of the recipes, for consumers which keep a copy of (a subset of) the recipes up to date.
+ *
+ * A request without changes after "since" can wait for the next change (long polling), the response is completed
+ * asynchronously so no request thread is blocked while waiting.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping(path = "/v1/recipes/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+public class RecipeChangeController {
+
+   private final RecipeChangeLog recipeChangeLog;
+
+   private final RecipePickerProperties recipePickerProperties;
+
+   @GetMapping
+   @Operation(description = "List the changes of the recipes after the sequence number in 'since', in the order of " +
+      "their sequence numbers. Get the recipes which were created or updated with the get recipe calls.")
+   @Parameter(name = "since", description = "Only list the changes after this sequence number, the 'last' of the " +
+      "previous response. Defaults to 0, all changes.")
+   @Parameter(name = "limit", description = "The maximum number of changes to return.")
+   @Parameter(name = "waitSeconds", description = "If there are no changes yet, wait at most this many seconds for " +
+      "the next change. Defaults to 0, respond immediately.")
+   @ApiResponses({
+      @ApiResponse(responseCode = "200", description = "The changes, empty if there were none within the wait time."),
+      @ApiResponse(responseCode = "400", description = "Bad Request, usually a problem in one of the parameters of " +
+         "the request.",
+         content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+   })
+   public CompletableFuture<ResponseEntity<RecipeChanges>> changes(
+      @Nullable @RequestParam Long since,
+      @Nullable @RequestParam Integer limit,
+      @Nullable @RequestParam Integer waitSeconds) {
+
+      var properties = recipePickerProperties.getChanges();
+      var after = since == null ? 0 : since;
+      var maxChanges = limit == null ? properties.getMaxPageSize() : limit;
+      if (maxChanges < 1 || maxChanges > properties.getMaxPageSize()) {
+         throw new ValidationException(String.format("The limit should be between 1 and %d",
+                                                     properties.getMaxPageSize()));
+      }
+      var wait = Duration.ofSeconds(waitSeconds == null ? 0 : waitSeconds);
+      if (wait.isNegative() || wait.compareTo(properties.getMaxWait()) > 0) {
+         throw new ValidationException(String.format("The wait should be between 0 and %d seconds",
+                                                     properties.getMaxWait().toSeconds()));
+      }
+
+      var changes = recipeChangeLog.findAfter(after, maxChanges);
+      if (!changes.isEmpty() || wait.isZero()) {
+         return CompletableFuture.completedFuture(ResponseEntity.ok(RecipeChanges.fromDomain(changes, after)));
+      }
+      // Not read on the thread which committed the change.
+      return recipeChangeLog.awaitChangeAfter(after, wait)
+                            .thenApplyAsync(ignored -> ResponseEntity.ok(
+                               RecipeChanges.fromDomain(recipeChangeLog.findAfter(after, maxChanges), after)));
+   }
+}
@@ -0,0 +1,44 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import lombok.Builder;
+import lombok.Data;
+import nl.lambdatree.recipepicker.domain.RecipeChange;
+import nl.lambdatree.recipepicker.domain.RecipeChangedEvent;
+
+import java.time.Instant;
+import java.util.List;
+
+/*
+ * A page of the change feed. Pass "last" as the "since" parameter of the next request.
+ */
+@Data
+@Builder
+public class RecipeChanges {
+   private List<Change> changes;
+   private long last; // The sequence number of the last change, or the requested one if there are no changes.
+
+   @Data
+   @Builder
+   public static class Change {
+      private long seq;
+      private long recipeId;
+      private RecipeChangedEvent.Operation operation;
+      private Instant changedAt;
+
+      public static Change fromDomain(RecipeChange from) {
+         return Change.builder()
+                      .seq(from.getSeq())
+                      .recipeId(from.getRecipeId())
+                      .operation(from.getOperation())
+                      .changedAt(from.getChangedAt())
+                      .build();
+      }
+   }
+
+   public static RecipeChanges fromDomain(List<RecipeChange> changes, long since) {
+      return RecipeChanges.builder()
+                          .changes(changes.stream().map(Change::fromDomain).toList())
+                          .last(changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq())
+                          .build();
+   }
+}
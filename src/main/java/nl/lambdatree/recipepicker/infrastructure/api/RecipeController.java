@@ -1,11 +1,14 @@
 package nl.lambdatree.recipepicker.infrastructure.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.SecuritySchemeType;
 import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.info.Info;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -13,23 +16,41 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.security.SecurityScheme;
 import lombok.RequiredArgsConstructor;
-import nl.lambdatree.recipepicker.domain.Ingredient;
+import nl.lambdatree.recipepicker.domain.IngredientCatalogue;
 import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.RecipePageRequest;
 import nl.lambdatree.recipepicker.domain.RecipeRepository;
+import nl.lambdatree.recipepicker.domain.RecipeSearchCriteria;
 import nl.lambdatree.recipepicker.domain.RecipeService;
+import nl.lambdatree.recipepicker.domain.RecipeSortKey;
+import nl.lambdatree.recipepicker.domain.RecipeSortOrder;
+import nl.lambdatree.recipepicker.domain.TextMode;
 import nl.lambdatree.recipepicker.infrastructure.configuration.RecipePickerProperties;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import javax.transaction.Transactional;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.ValidationException;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -46,17 +67,31 @@ import java.util.stream.Collectors;
 
 @Validated
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Transactional
-@RequestMapping(path = "/v1/recipes", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequestMapping(path = "/v1/recipes",
+   produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
 @RequiredArgsConstructor
 public class RecipeController {
 
+   private static final String SORT_BY_RELEVANCE = "relevance";
+
    private final RecipeService recipeService;
 
    private final RecipeRepository recipeRepository;
 
+   private final IngredientCatalogue ingredientCatalogue;
+
+   private final RecipeCache recipeCache;
+
    private final RecipePickerProperties recipePickerProperties;
 
+   private final ObjectMapper objectMapper;
+
+   private final SearchMetrics searchMetrics;
+
+   private final SearchParameters searchParameters;
+
    @PostMapping
    @Operation(description = "Create a new recipe with the selected attributes, returning its location in the " +
       "Location header. Note that only the ids of the ingredients are used, the name is discarded." +
@@ -70,7 +105,7 @@ public class RecipeController {
          content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
    })
    public ResponseEntity<Void> createRecipe(@Valid @RequestBody Recipe recipe) {
-      var saved = recipeRepository.save(recipe.toDomain());
+      var saved = recipeService.create(recipe.toDomain());
       var location = UriComponentsBuilder.fromUri(recipePickerProperties.getBaseUrl())
                                          .path("/v1/recipes/{id}")
                                          .build(saved.getId());
@@ -79,17 +114,75 @@ public class RecipeController {
                            .build();
    }
 
+   @Transactional(readOnly = true)
    @RequestMapping(path = "/{id}", method = RequestMethod.GET)
-   @Operation(description = "Retrieve the recipe at the supplied id.")
+   @Operation(description = "Retrieve the recipe at the supplied id. The ETag header contains the version of the " +
+      "recipe, pass it in If-None-Match to only get the recipe if it changed, or in If-Match to only update or " +
+      "delete the recipe if it didn't change.")
    @ApiResponses({
-      @ApiResponse(responseCode = "200", description = "Successfully retrieved the recipe."),
+      @ApiResponse(responseCode = "200", description = "Successfully retrieved the recipe.",
+         headers = {
+            @Header(name = "ETag", description = "The version of the recipe.")
+         }),
+      @ApiResponse(responseCode = "304", description = "The recipe didn't change since the supplied ETag."),
       @ApiResponse(responseCode = "404", description = "Recipe not found.",
          content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
    })
-   public ResponseEntity<Recipe> getRecipe(@NotNull @PathVariable Long id) {
-      var found = recipeRepository.findById(id)
-                                  .orElseThrow(); // Use the exception handler to construct a not-found response.
-      return ResponseEntity.ok(Recipe.fromDomain(found));
+   public ResponseEntity<Recipe> getRecipe(@NotNull @PathVariable Long id, WebRequest request) {
+      // Use the exception handler to construct a not-found response.
+      if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+         // Only the version is needed to check the ETag, without loading the recipe if it isn't cached.
+         var cached = recipeCache.peek(id);
+         var version = cached != null ? cached.getVersion() : recipeRepository.findVersionById(id).orElseThrow();
+         if (request.checkNotModified(RecipeETag.of(version))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                 .eTag(RecipeETag.of(version))
+                                 .build();
+         }
+      }
+      var found = recipeCache.get(id, key -> Recipe.fromDomain(recipeRepository.findById(key).orElseThrow()));
+      return ResponseEntity.ok()
+                           .eTag(RecipeETag.of(found.getVersion()))
+                           .body(found);
+   }
+
+   @Transactional(readOnly = true)
+   @GetMapping(params = "ids")
+   @Operation(description = "Retrieve the recipes with the supplied ids, in the order of the ids. Ids without a " +
+      "recipe are listed in missingIds instead of failing the request.")
+   @Parameter(name = "ids", description = "Comma separated list of recipe ids, at most the maximum page size.")
+   @ApiResponses({
+      @ApiResponse(responseCode = "200", description = "Successfully retrieved the recipes."),
+      @ApiResponse(responseCode = "400", description = "Bad request, like too many ids.",
+         content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+   })
+   public ResponseEntity<RecipeBatch> getRecipes(@RequestParam List<Long> ids) {
+      var maxIds = recipePickerProperties.getSearch().getMaxPageSize();
+      var distinctIds = ids.stream()
+                           .filter(Objects::nonNull)
+                           .distinct()
+                           .toList();
+      if (distinctIds.size() > maxIds) {
+         throw new ValidationException(String.format("At most %d ids can be retrieved at once", maxIds));
+      }
+      // The recipes which aren't cached are fetched with a single query, including their ingredients.
+      var found = recipeCache.getAll(distinctIds, missing -> {
+         var missingIds = new ArrayList<Long>();
+         missing.forEach(missingIds::add);
+         var loaded = new HashMap<Long, Recipe>();
+         recipeRepository.findAllById(missingIds)
+                         .forEach(recipe -> loaded.put(recipe.getId(), Recipe.fromDomain(recipe)));
+         return loaded;
+      });
+      return ResponseEntity.ok(RecipeBatch.builder()
+                                          .recipes(distinctIds.stream()
+                                                              .map(found::get)
+                                                              .filter(Objects::nonNull)
+                                                              .toList())
+                                          .missingIds(distinctIds.stream()
+                                                                 .filter(id -> !found.containsKey(id))
+                                                                 .toList())
+                                          .build());
    }
 
    @RequestMapping(path = "/{id}", method = RequestMethod.PUT)
@@ -97,67 +190,236 @@ public class RecipeController {
    @ApiResponses({
       @ApiResponse(responseCode = "204", description = "Successfully updated the recipe."),
       @ApiResponse(responseCode = "404", description = "Recipe not found.",
+         content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+      @ApiResponse(responseCode = "412", description = "The recipe changed since the ETag in If-Match.",
          content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
    })
-   public ResponseEntity<Void> updateRecipe(@Valid @RequestBody Recipe recipe, @PathVariable Long id) {
-      recipeService.update(id, recipe.toDomain());
+   public ResponseEntity<Void> updateRecipe(@Valid @RequestBody Recipe recipe, @PathVariable Long id,
+                                            @Nullable @RequestHeader(HttpHeaders.IF_MATCH) String ifMatch) {
+      recipeService.update(id, recipe.toDomain(), RecipeETag.parseIfMatch(ifMatch));
       return ResponseEntity.noContent()
                            .build();
    }
 
+   @PatchMapping(path = "/{id}/ingredients")
+   @Operation(description = "Add and remove ingredients of the recipe at the supplied id, without replacing the " +
+      "whole recipe. Returns the changed recipe.")
+   @ApiResponses({
+      @ApiResponse(responseCode = "200", description = "Successfully changed the ingredients of the recipe.",
+         headers = {
+            @Header(name = "ETag", description = "The new version of the recipe.")
+         }),
+      @ApiResponse(responseCode = "400", description = "Bad request, like an unknown ingredient or no ingredients left.",
+         content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+      @ApiResponse(responseCode = "404", description = "Recipe not found.",
+         content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+      @ApiResponse(responseCode = "412", description = "The recipe changed since the ETag in If-Match.",
+         content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+   })
+   public ResponseEntity<Recipe> patchIngredients(@RequestBody IngredientsPatch patch, @PathVariable Long id,
+                                                  @Nullable @RequestHeader(HttpHeaders.IF_MATCH) String ifMatch) {
+      var snapshot = ingredientCatalogue.getSnapshot();
+      var added = snapshot.resolve(Objects.requireNonNullElse(patch.getAdd(), Set.of()));
+      var removed = snapshot.resolve(Objects.requireNonNullElse(patch.getRemove(), Set.of()));
+      var patched = recipeService.patchIngredients(id, added, removed, RecipeETag.parseIfMatch(ifMatch));
+      return ResponseEntity.ok()
+                           .eTag(RecipeETag.of(patched.getVersion()))
+                           .body(Recipe.fromDomain(patched));
+   }
+
    @RequestMapping(path = "/{id}", method = RequestMethod.DELETE)
    @Operation(description = "Delete the recipe at the supplied id.")
    @ApiResponses({
       @ApiResponse(responseCode = "204", description = "Recipe successfully deleted."),
       @ApiResponse(responseCode = "404", description = "Recipe not found.",
+         content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+      @ApiResponse(responseCode = "412", description = "The recipe changed since the ETag in If-Match.",
          content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
    })
-   public ResponseEntity<Void> deleteRecipe(@PathVariable Long id) {
-      recipeService.delete(id);
+   public ResponseEntity<Void> deleteRecipe(@PathVariable Long id,
+                                            @Nullable @RequestHeader(HttpHeaders.IF_MATCH) String ifMatch) {
+      recipeService.delete(id, RecipeETag.parseIfMatch(ifMatch));
       return ResponseEntity.noContent()
                            .build();
    }
 
-   // TODO: add paging and sorting using the Pageable utilities from spring-data.
+   @Transactional(readOnly = true)
    @GetMapping
    @Operation(description = "Search for recipes with the specified criteria." +
       "Leave a criteria empty to not use it in the search. " +
-      "Results are ordered by the recipe's name. " +
-      "The include and exclude ingredient lists should not overlap.")
-   @Parameter(name = "text", description = "The name or instructions should contain this string.")
+      "Results are ordered by the recipe's name, unless a different sort order is specified. " +
+      "A full-text search can be ordered by relevance instead, returning only the first page of results. " +
+      "The include and exclude ingredient lists should not overlap. " +
+      "If there are more results than the limit, the response has an " + ContinuationToken.HEADER + " header, " +
+      "pass its value in the continuationToken parameter (with the same sort parameter) to get the next page.")
+   @Parameter(name = "text", description = "The name or instructions should contain the words of this text " +
+      "(full-text mode, at most " + RecipeSearchCriteria.MAX_TEXT_WORDS + " distinct words) or this string " +
+      "(substring mode).")
+   @Parameter(name = "textMode", description = "Either FULL_TEXT, where words with the same stem match as well, " +
+      "like 'boiling' and 'boil', or SUBSTRING. Defaults to the configured text mode, which is SUBSTRING unless a " +
+      "deployment changes it.")
    @Parameter(name = "category", description = "The recipe should have this category.")
    @Parameter(name = "nofServings", description = "The ingredient amounts should be for this many servings.")
    @Parameter(name = "includeIngredientIds", description = "The recipe should use *all* the ingredients from this " +
       "list of ingredient ids.")
    @Parameter(name = "excludeIngredientIds", description = "The recipe should *not* have at any of these ingredients " +
       "from this list of ingredient ids.")
-   @ApiResponse(responseCode = "400", description = "Bad Request, usually a problem in one of the parameters of the " +
-      "request body.",
+   @Parameter(name = "limit", description = "The maximum number of recipes to return.")
+   @Parameter(name = "sort", description = "Comma separated list of the properties to sort on (name, category, " +
+      "nofServings), prefix a property with '-' for a descending order. Defaults to 'name'. " +
+      "Use 'relevance' to order a full-text search by relevance, matches in the name weigh more than matches in " +
+      "the instructions.")
+   @Parameter(name = "continuationToken", description = "Continue with the next page of a previous search.")
+   @ApiResponses({
+      @ApiResponse(responseCode = "200", description = "Successful search.",
+         headers = {
+            @Header(name = ContinuationToken.HEADER, description = "Token for fetching the next page, if any.")
+         },
+         content = @Content(array = @ArraySchema(schema = @Schema(implementation = Recipe.class)))),
+      @ApiResponse(responseCode = "400", description = "Bad Request, usually a problem in one of the parameters of " +
+         "the request.",
+         content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+   })
+   // The recipes are written to json by the RecipeJsonSerializer, without mapping them to DTOs first.
+   public ResponseEntity<List<nl.lambdatree.recipepicker.domain.Recipe>> search(
+      @Nullable @RequestParam String text,
+      @Nullable @RequestParam TextMode textMode,
+      @Nullable @RequestParam @Valid RecipeCategory recipeCategory,
+      @Nullable @RequestParam Integer nofServings,
+      @Nullable @RequestParam Long[] includeIngredientIds,
+      @Nullable @RequestParam Long[] excludeIngredientIds,
+      @Nullable @RequestParam Integer limit,
+      @Nullable @RequestParam String sort,
+      @Nullable @RequestParam String continuationToken) {
+
+      var pageRequest = toPageRequest(limit, sort, continuationToken);
+      var criteria = searchParameters.toCriteria(text, textMode, recipeCategory, nofServings, includeIngredientIds,
+                                                 excludeIngredientIds);
+      var page = searchMetrics.search(SearchMetrics.Kind.RECIPES, criteria,
+                                      () -> recipeService.search(criteria, pageRequest));
+
+      var response = ResponseEntity.ok();
+      if (page.getNext() != null) {
+         response.header(ContinuationToken.HEADER,
+                         ContinuationToken.encode(toSortParameter(pageRequest.getSort()), page.getNext()));
+      }
+      return response.body(page.getRecipes());
+   }
+
+   @Transactional(readOnly = true)
+   @GetMapping(path = "/summaries")
+   @Operation(description = "Search for recipes like the search above, but only return the id, name, category and " +
+      "number of servings of each recipe. Use this for listing recipes, it doesn't load their ingredients.")
+   @ApiResponses({
+      @ApiResponse(responseCode = "200", description = "Successful search.",
+         headers = {
+            @Header(name = ContinuationToken.HEADER, description = "Token for fetching the next page, if any.")
+         }),
+      @ApiResponse(responseCode = "400", description = "Bad Request, usually a problem in one of the parameters of " +
+         "the request.",
+         content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+   })
+   public ResponseEntity<List<RecipeSummary>> searchSummaries(
+      @Nullable @RequestParam String text,
+      @Nullable @RequestParam TextMode textMode,
+      @Nullable @RequestParam @Valid RecipeCategory recipeCategory,
+      @Nullable @RequestParam Integer nofServings,
+      @Nullable @RequestParam Long[] includeIngredientIds,
+      @Nullable @RequestParam Long[] excludeIngredientIds,
+      @Nullable @RequestParam Integer limit,
+      @Nullable @RequestParam String sort,
+      @Nullable @RequestParam String continuationToken) {
+
+      var pageRequest = toPageRequest(limit, sort, continuationToken);
+      var criteria = searchParameters.toCriteria(text, textMode, recipeCategory, nofServings, includeIngredientIds,
+                                                 excludeIngredientIds);
+      var page = searchMetrics.search(SearchMetrics.Kind.SUMMARIES, criteria,
+                                      () -> recipeService.searchSummaries(criteria, pageRequest));
+
+      var response = ResponseEntity.ok();
+      if (page.getNext() != null) {
+         response.header(ContinuationToken.HEADER,
+                         ContinuationToken.encode(toSortParameter(pageRequest.getSort()), page.getNext()));
+      }
+      return response.body(searchMetrics.map(SearchMetrics.Kind.SUMMARIES, page.getRecipes(),
+                                             RecipeSummary::fromDomain));
+   }
+
+   @Transactional(readOnly = true)
+   @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+   @Operation(description = "Export all recipes matching the criteria as newline delimited json, one recipe per line. " +
+      "The recipes are streamed from the database, so there is no limit on the number of results. " +
+      "The criteria are the same as for the search.")
+   @ApiResponse(responseCode = "400", description = "Bad Request, usually a problem in one of the parameters of " +
+      "the request.",
       content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
-   public List<Recipe> search(
+   public void export(
       @Nullable @RequestParam String text,
+      @Nullable @RequestParam TextMode textMode,
       @Nullable @RequestParam @Valid RecipeCategory recipeCategory,
       @Nullable @RequestParam Integer nofServings,
       @Nullable @RequestParam Long[] includeIngredientIds,
-      @Nullable @RequestParam Long[] excludeIngredientIds) {
-
-      // The domain layer expects non-null arguments and full ingredient objects in the include/exclude sets.
-      return recipeService.search(text == null ? "" : text,
-                                  recipeCategory == null ? RecipeCategory.ALL : recipeCategory,
-                                  nofServings == null ? 0 : nofServings,
-                                  toIngredients(includeIngredientIds),
-                                  toIngredients(excludeIngredientIds))
-                          .stream()
-                          .map(Recipe::fromDomain)
-                          .toList();
+      @Nullable @RequestParam Long[] excludeIngredientIds,
+      HttpServletResponse response) throws IOException {
+
+      response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+      response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+      // Not closed on an exception, which would commit the response before the exception handler can set the status.
+      var generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+      recipeService.scroll(searchParameters.toCriteria(text, textMode, recipeCategory, nofServings,
+                                                       includeIngredientIds, excludeIngredientIds),
+                           recipe -> writeLine(generator, recipe));
+      generator.close();
+   }
+
+   private static void writeLine(JsonGenerator generator, nl.lambdatree.recipepicker.domain.Recipe recipe) {
+      try {
+         generator.writeObject(recipe);
+         generator.writeRaw('\n');
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private RecipePageRequest toPageRequest(Integer limit, String sort, String continuationToken) {
+      if (sort != null && sort.trim().equals(SORT_BY_RELEVANCE)) {
+         if (continuationToken != null) {
+            throw new ValidationException("Only the first page can be ordered by relevance");
+         }
+         return RecipePageRequest.builder()
+                                 .limit(searchParameters.toLimit(limit))
+                                 .byRelevance(true)
+                                 .build();
+      }
+      var sortOrders = toSortOrders(sort);
+      var normalizedSort = toSortParameter(sortOrders);
+      return RecipePageRequest.builder()
+                              .limit(searchParameters.toLimit(limit))
+                              .sort(sortOrders)
+                              .after(continuationToken == null ? null :
+                                        ContinuationToken.decode(continuationToken, normalizedSort, sortOrders))
+                              .build();
+   }
+
+   private List<RecipeSortOrder> toSortOrders(String sort) {
+      if (StringUtils.isBlank(sort)) {
+         return RecipePageRequest.DEFAULT_SORT;
+      }
+      var sortOrders = Arrays.stream(sort.split(","))
+                             .map(String::trim)
+                             .map(property -> property.startsWith("-") ?
+                                RecipeSortOrder.desc(RecipeSortKey.fromProperty(property.substring(1))) :
+                                RecipeSortOrder.asc(RecipeSortKey.fromProperty(property)))
+                             .toList();
+      if (sortOrders.stream().map(RecipeSortOrder::getKey).distinct().count() != sortOrders.size()) {
+         throw new ValidationException(String.format("Duplicate property in sort '%s'", sort));
+      }
+      return sortOrders;
    }
 
-   private Set<Ingredient> toIngredients(Long[] ids) {
-      if (ids == null) {
-         return Set.of();
-      } else
-         return Arrays.stream(ids)
-                      .map(id -> Ingredient.builder().id(id).build())
-                      .collect(Collectors.toSet());
+   private static String toSortParameter(List<RecipeSortOrder> sortOrders) {
+      return sortOrders.stream()
+                       .map(order -> (order.isAscending() ? "" : "-") + order.getKey().getProperty())
+                       .collect(Collectors.joining(","));
    }
 }
@@ -0,0 +1,35 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import org.springframework.lang.Nullable;
+
+import javax.validation.ValidationException;
+import java.util.regex.Pattern;
+
+/*
+ * A strong ETag of a recipe, its version. Only the version changes on an update, so the ETag can be checked without
+ * loading the recipe itself.
+ */
+final class RecipeETag {
+
+   private static final Pattern STRONG_ETAG = Pattern.compile("\"(\\d+)\"");
+
+   private RecipeETag() {
+   }
+
+   static String of(long version) {
+      return "\"" + version + "\"";
+   }
+
+   // The version expected by an If-Match header, null if any version will do.
+   @Nullable
+   static Long parseIfMatch(@Nullable String ifMatch) {
+      if (ifMatch == null || ifMatch.trim().equals("*")) {
+         return null;
+      }
+      var matcher = STRONG_ETAG.matcher(ifMatch.trim());
+      if (!matcher.matches()) {
+         throw new ValidationException(String.format("If-Match should be a single ETag of a recipe, not %s", ifMatch));
+      }
+      return Long.parseLong(matcher.group(1));
+   }
+}
@@ -0,0 +1,165 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.lambdatree.recipepicker.domain.IngredientCatalogue;
+import nl.lambdatree.recipepicker.domain.RecipeImporter;
+import nl.lambdatree.recipepicker.infrastructure.configuration.RecipePickerProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.ValidationException;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/*
+ * Bulk import of recipes. The request body is read one record at a time, valid records are inserted in batches of
+ * recipe-picker.recipe-import.batch-size recipes, each in a transaction of its own. Not transactional as a whole, a
+ * large import would otherwise hold a single transaction (and all its recipes) until the end.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping(path = "/v1/recipes/import", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+@Slf4j
+public class RecipeImportController {
+
+   private final RecipeImporter recipeImporter;
+
+   private final IngredientCatalogue ingredientCatalogue;
+
+   private final RecipePickerProperties recipePickerProperties;
+
+   private final ObjectMapper objectMapper;
+
+   private final Validator validator;
+
+   // A valid record waiting for the next batch insert.
+   private record Pending(int index, nl.lambdatree.recipepicker.domain.Recipe recipe) {
+   }
+
+   @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+   @Operation(description = "Import recipes, either as a json array or as newline delimited json with a recipe per " +
+      "line. Every record is validated like a created recipe, invalid records are skipped. The response reports the " +
+      "outcome of each record, with the id of the recipes created.")
+   @ApiResponses({
+      @ApiResponse(responseCode = "200", description = "The import report, also when some records were rejected."),
+      @ApiResponse(responseCode = "400", description = "Bad request, the body isn't json.",
+         content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+   })
+   public ResponseEntity<ImportReport> importRecipes(HttpServletRequest request) throws IOException {
+      var batchSize = recipePickerProperties.getRecipeImport().getBatchSize();
+      var results = new ArrayList<ImportReport.Result>();
+      var batch = new ArrayList<Pending>(batchSize);
+
+      // Reads the elements of a json array, or a sequence of json values.
+      try (var records = objectMapper.readerFor(Recipe.class).<Recipe>readValues(request.getInputStream())) {
+         for (int index = 0; ; index++) {
+            Recipe record;
+            try {
+               if (!records.hasNextValue()) {
+                  break;
+               }
+               record = records.nextValue();
+            } catch (JsonParseException e) {
+               // Malformed json, the rest of the body can't be read.
+               results.add(rejected(index, ImportReport.Status.INVALID, e.getOriginalMessage()));
+               break;
+            } catch (JsonMappingException e) {
+               results.add(rejected(index, ImportReport.Status.INVALID, e.getOriginalMessage()));
+               continue;
+            }
+
+            try {
+               batch.add(new Pending(index, toDomain(record)));
+            } catch (ValidationException e) {
+               results.add(rejected(index, ImportReport.Status.INVALID, e.getMessage()));
+            }
+            if (batch.size() == batchSize) {
+               insert(batch, results);
+            }
+         }
+      }
+      insert(batch, results);
+      // Rejected records are reported right away, created ones after their batch.
+      results.sort(Comparator.comparingInt(ImportReport.Result::getIndex));
+
+      var created = (int) results.stream()
+                                 .filter(result -> result.getStatus() == ImportReport.Status.CREATED)
+                                 .count();
+      return ResponseEntity.ok(ImportReport.builder()
+                                           .created(created)
+                                           .rejected(results.size() - created)
+                                           .results(results)
+                                           .build());
+   }
+
+   private nl.lambdatree.recipepicker.domain.Recipe toDomain(Recipe record) {
+      if (record == null) {
+         throw new ValidationException("Not a recipe");
+      }
+      var violations = validator.validate(record);
+      if (!violations.isEmpty()) {
+         throw new ValidationException(violations.stream()
+                                                 .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                                                 .sorted()
+                                                 .collect(Collectors.joining(", ")));
+      }
+      var ingredientIds = record.getIngredients()
+                                .stream()
+                                .map(ingredient -> ingredient == null ? null : ingredient.getId())
+                                .toList();
+      if (ingredientIds.stream().anyMatch(Objects::isNull)) {
+         throw new ValidationException("Ingredient without an id");
+      }
+      var recipe = record.toDomain();
+      recipe.setIngredients(ingredientCatalogue.getSnapshot().resolve(ingredientIds));
+      return recipe;
+   }
+
+   private void insert(List<Pending> batch, List<ImportReport.Result> results) {
+      if (batch.isEmpty()) {
+         return;
+      }
+      try {
+         recipeImporter.insert(batch.stream().map(Pending::recipe).toList());
+         batch.forEach(pending -> results.add(ImportReport.Result.builder()
+                                                                .index(pending.index())
+                                                                .status(ImportReport.Status.CREATED)
+                                                                .id(pending.recipe().getId())
+                                                                .build()));
+      } catch (DataAccessException e) {
+         log.warn("Import of {} recipes failed: {}", batch.size(), e.getMessage());
+         batch.forEach(pending -> results.add(rejected(pending.index(), ImportReport.Status.FAILED,
+                                                       e.getMostSpecificCause().getMessage())));
+      }
+      batch.clear();
+   }
+
+   private static ImportReport.Result rejected(int index, ImportReport.Status status, String message) {
+      return ImportReport.Result.builder()
+                                .index(index)
+                                .status(status)
+                                .message(message)
+                                .build();
+   }
+}
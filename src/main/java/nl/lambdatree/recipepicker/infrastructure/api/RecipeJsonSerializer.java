@@ -0,0 +1,92 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import nl.lambdatree.recipepicker.domain.Ingredient;
+import nl.lambdatree.recipepicker.domain.Recipe;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+
+/*
+ * Writes a domain recipe as the json of the api Recipe, straight from the entity: the search and export calls don't
+ * copy their results into DTOs first, and no reflection is involved. The field names are encoded once.
+ *
+ * The ingredients of the recipe should be loaded, only their id and name are written, or only their id for the
+ * compact encoding (see CompactRecipeModule).
+ */
+@JsonComponent
+public class RecipeJsonSerializer extends StdSerializer<Recipe> {
+
+   private static final SerializableString ID = new SerializedString("id");
+   private static final SerializableString NAME = new SerializedString("name");
+   private static final SerializableString INSTRUCTIONS = new SerializedString("instructions");
+   private static final SerializableString CATEGORY = new SerializedString("category");
+   private static final SerializableString NOF_SERVINGS = new SerializedString("nofServings");
+   private static final SerializableString INGREDIENTS = new SerializedString("ingredients");
+
+   private final boolean ingredientIds;
+
+   public RecipeJsonSerializer() {
+      this(false);
+   }
+
+   public RecipeJsonSerializer(boolean ingredientIds) {
+      super(Recipe.class);
+      this.ingredientIds = ingredientIds;
+   }
+
+   @Override
+   public void serialize(Recipe recipe, JsonGenerator generator, SerializerProvider provider) throws IOException {
+      generator.writeStartObject(recipe);
+      generator.writeFieldName(ID);
+      writeNumber(generator, recipe.getId());
+      generator.writeFieldName(NAME);
+      generator.writeString(recipe.getName());
+      generator.writeFieldName(INSTRUCTIONS);
+      generator.writeString(recipe.getInstructions());
+      generator.writeFieldName(CATEGORY);
+      if (recipe.getCategory() == null) {
+         generator.writeNull();
+      } else {
+         generator.writeString(recipe.getCategory().name());
+      }
+      generator.writeFieldName(NOF_SERVINGS);
+      generator.writeNumber(recipe.getNofServings());
+      generator.writeFieldName(INGREDIENTS);
+      if (recipe.getIngredients() == null) {
+         generator.writeNull();
+      } else {
+         generator.writeStartArray();
+         for (var ingredient : recipe.getIngredients()) {
+            if (ingredientIds) {
+               writeNumber(generator, ingredient.getId());
+            } else {
+               writeIngredient(generator, ingredient);
+            }
+         }
+         generator.writeEndArray();
+      }
+      generator.writeEndObject();
+   }
+
+   private static void writeIngredient(JsonGenerator generator, Ingredient ingredient) throws IOException {
+      generator.writeStartObject();
+      generator.writeFieldName(ID);
+      writeNumber(generator, ingredient.getId());
+      generator.writeFieldName(NAME);
+      generator.writeString(ingredient.getName());
+      generator.writeEndObject();
+   }
+
+   private static void writeNumber(JsonGenerator generator, Long value) throws IOException {
+      if (value == null) {
+         generator.writeNull();
+      } else {
+         generator.writeNumber(value);
+      }
+   }
+}
@@ -0,0 +1,26 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import lombok.Builder;
+import lombok.Data;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+
+/*
+ * DTO for listing recipes, without their instructions and ingredients.
+ */
+@Data
+@Builder
+public class RecipeSummary {
+   private Long id;
+   private String name;
+   private RecipeCategory category;
+   private int nofServings;
+
+   public static RecipeSummary fromDomain(nl.lambdatree.recipepicker.domain.RecipeSummary from) {
+      return RecipeSummary.builder()
+                          .id(from.getId())
+                          .name(from.getName())
+                          .category(from.getCategory())
+                          .nofServings(from.getNofServings())
+                          .build();
+   }
+}
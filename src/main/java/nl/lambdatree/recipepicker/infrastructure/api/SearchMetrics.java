@@ -0,0 +1,106 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import nl.lambdatree.recipepicker.domain.RecipePage;
+import nl.lambdatree.recipepicker.domain.RecipeSearchCriteria;
+import nl.lambdatree.recipepicker.domain.TextMode;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+ * Metrics of the searches of the RecipeController:
+ * - "recipe.search": the duration of a search, with a histogram, tagged by the kind of result and by which criteria
+ *   are present (never by their values), so there are at most 2 * 3 * 2^4 time series.
+ * - "recipe.search.results": the number of recipes in a page of results.
+ * - "recipe.mapping": the time to map a page of summaries to the DTOs, recipes are written to json without a DTO.
+ *
+ * The meters are created once per combination of tags, a search only looks one up by an integer key.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchMetrics {
+
+   public enum Kind {
+      RECIPES, SUMMARIES
+   }
+
+   private final MeterRegistry meterRegistry;
+
+   private final Map<Integer, Timer> searchTimers = new ConcurrentHashMap<>();
+   private final Map<Kind, DistributionSummary> resultSizes = new ConcurrentHashMap<>();
+   private final Map<Kind, Timer> mappingTimers = new ConcurrentHashMap<>();
+
+   public <T> RecipePage<T> search(Kind kind, RecipeSearchCriteria criteria, Supplier<RecipePage<T>> search) {
+      var start = System.nanoTime();
+      var page = search.get();
+      searchTimer(kind, criteria).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      resultSizes.computeIfAbsent(kind, this::resultSize).record(page.getRecipes().size());
+      return page;
+   }
+
+   public <T, R> List<R> map(Kind kind, List<T> results, Function<T, R> mapper) {
+      var start = System.nanoTime();
+      var mapped = results.stream()
+                          .map(mapper)
+                          .toList();
+      mappingTimers.computeIfAbsent(kind, this::mappingTimer)
+                   .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      return mapped;
+   }
+
+   private Timer searchTimer(Kind kind, RecipeSearchCriteria criteria) {
+      var text = criteria.hasText() ? criteria.getTextMode() : null;
+      var key = kind.ordinal() << 6
+         | (text == null ? 0 : text.ordinal() + 1) << 4
+         | (criteria.hasCategory() ? 1 : 0)
+         | (criteria.hasNofServings() ? 2 : 0)
+         | (criteria.getIncludeIngredientIds().isEmpty() ? 0 : 4)
+         | (criteria.getExcludeIngredientIds().isEmpty() ? 0 : 8);
+      return searchTimers.computeIfAbsent(key, k -> Timer.builder("recipe.search")
+                                                         .description("Duration of the recipe searches")
+                                                         .tag("kind", tagValue(kind))
+                                                         .tag("text", text == null ? "none" : tagValue(text))
+                                                         .tag("category", present(k & 1))
+                                                         .tag("servings", present(k & 2))
+                                                         .tag("include", present(k & 4))
+                                                         .tag("exclude", present(k & 8))
+                                                         .publishPercentileHistogram()
+                                                         .minimumExpectedValue(Duration.ofMillis(1))
+                                                         .maximumExpectedValue(Duration.ofSeconds(10))
+                                                         .register(meterRegistry));
+   }
+
+   private DistributionSummary resultSize(Kind kind) {
+      return DistributionSummary.builder("recipe.search.results")
+                                .description("Number of recipes in a page of search results")
+                                .tag("kind", tagValue(kind))
+                                .serviceLevelObjectives(1, 10, 100, 1000)
+                                .register(meterRegistry);
+   }
+
+   private Timer mappingTimer(Kind kind) {
+      return Timer.builder("recipe.mapping")
+                  .description("Duration of mapping a page of search results to the DTOs")
+                  .tag("kind", tagValue(kind))
+                  .register(meterRegistry);
+   }
+
+   private static String present(int bit) {
+      return String.valueOf(bit != 0);
+   }
+
+   private static String tagValue(Enum<?> value) {
+      return value.name().toLowerCase(Locale.ROOT).replace('_', '-');
+   }
+}
@@ -0,0 +1,65 @@
+package nl.lambdatree.recipepicker.infrastructure.api;
+
+import lombok.RequiredArgsConstructor;
+import nl.lambdatree.recipepicker.domain.Ingredient;
+import nl.lambdatree.recipepicker.domain.IngredientCatalogue;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.RecipeSearchCriteria;
+import nl.lambdatree.recipepicker.domain.TextMode;
+import nl.lambdatree.recipepicker.infrastructure.configuration.RecipePickerProperties;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ValidationException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+ * Converts and validates the request parameters of a recipe search, shared by the servlet and reactive controllers.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchParameters {
+
+   private final IngredientCatalogue ingredientCatalogue;
+
+   private final RecipePickerProperties recipePickerProperties;
+
+   // The domain layer expects non-null arguments, unknown ingredient ids are rejected.
+   public RecipeSearchCriteria toCriteria(String text, TextMode textMode, RecipeCategory recipeCategory,
+                                          Integer nofServings, Long[] includeIngredientIds,
+                                          Long[] excludeIngredientIds) {
+      return RecipeSearchCriteria.builder()
+                                 .text(text == null ? "" : text)
+                                 .textMode(textMode == null ? recipePickerProperties.getSearch().getTextMode() : textMode)
+                                 .category(recipeCategory == null ? RecipeCategory.ALL : recipeCategory)
+                                 .nofServings(nofServings == null ? 0 : nofServings)
+                                 .includeIngredientIds(toIngredientIds(includeIngredientIds))
+                                 .excludeIngredientIds(toIngredientIds(excludeIngredientIds))
+                                 .build();
+   }
+
+   public int toLimit(Integer limit) {
+      var search = recipePickerProperties.getSearch();
+      if (limit == null) {
+         return search.getDefaultPageSize();
+      }
+      if (limit < 1 || limit > search.getMaxPageSize()) {
+         throw new ValidationException(String.format("The limit should be between 1 and %d",
+                                                     search.getMaxPageSize()));
+      }
+      return limit;
+   }
+
+   // Unknown ingredient ids are rejected, without a round trip to the database.
+   private Set<Long> toIngredientIds(Long[] ids) {
+      if (ids == null) {
+         return Set.of();
+      } else
+         return ingredientCatalogue.getSnapshot()
+                                   .resolve(Arrays.asList(ids))
+                                   .stream()
+                                   .map(Ingredient::getId)
+                                   .collect(Collectors.toUnmodifiableSet());
+   }
+}
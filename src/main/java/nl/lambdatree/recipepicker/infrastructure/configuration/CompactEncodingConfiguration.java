@@ -0,0 +1,34 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import nl.lambdatree.recipepicker.infrastructure.api.CompactRecipeModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/*
+ * The binary representation of the API for service to service calls: a request accepting application/cbor gets the
+ * same documents as the json encoded with CBOR, with the ingredients of a recipe encoded by their id (see
+ * CompactRecipeModule). Requests can send their body as CBOR as well.
+ *
+ * The object mapper is configured like the json one of Spring Boot, so it has the same modules and settings.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CompactEncodingConfiguration {
+
+   @Bean
+   public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+      return new MappingJackson2CborHttpMessageConverter(compactObjectMapper(builder));
+   }
+
+   // The module is registered last, so its serializers take precedence over the json ones.
+   public static ObjectMapper compactObjectMapper(Jackson2ObjectMapperBuilder builder) {
+      return builder.factory(new CBORFactory())
+                    .postConfigurer(objectMapper -> objectMapper.registerModule(new CompactRecipeModule()))
+                    .build();
+   }
+}
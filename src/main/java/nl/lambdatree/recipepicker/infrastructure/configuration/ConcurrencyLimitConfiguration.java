@@ -0,0 +1,49 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/*
+ * Limits the number of API requests in progress with the ConcurrencyLimitFilter, when
+ * recipe-picker.concurrency-limit.enabled is set. Always on with virtual threads, which don't limit the requests
+ * themselves like a pool of platform threads does.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnExpression("${recipe-picker.concurrency-limit.enabled:false} or " +
+   "${recipe-picker.virtual-threads.enabled:false}")
+@RequiredArgsConstructor
+@Slf4j
+public class ConcurrencyLimitConfiguration {
+
+   // Used by Hikari if the maximum pool size isn't set.
+   private static final int DEFAULT_POOL_SIZE = 10;
+
+   private final RecipePickerProperties recipePickerProperties;
+
+   @Bean
+   public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(DataSource dataSource) {
+      var properties = recipePickerProperties.getConcurrencyLimit();
+      var maxConcurrentRequests = properties.getMaxConcurrentRequests();
+      if (maxConcurrentRequests == 0) {
+         var pool = DataSourceUnwrapper.unwrap(dataSource, HikariConfigMXBean.class, HikariDataSource.class);
+         maxConcurrentRequests = pool != null && pool.getMaximumPoolSize() > 0 ?
+            pool.getMaximumPoolSize() : DEFAULT_POOL_SIZE;
+      }
+      log.info("Handling at most {} requests at the same time", maxConcurrentRequests);
+      var registration = new FilterRegistrationBean<>(
+         new ConcurrencyLimitFilter(maxConcurrentRequests, properties.getAcquireTimeout()));
+      registration.addUrlPatterns("/v1/*");
+      return registration;
+   }
+}
@@ -0,0 +1,59 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Limits the number of requests handled at the same time. With virtual threads every request gets a thread of its
+ * own, without this limit the requests would queue for a database connection instead, holding on to their memory
+ * and failing with a connection timeout. A request which can't start within the timeout gets a 503.
+ *
+ * The permit is held while the request thread handles it, an asynchronous request (like a long poll of the change
+ * feed) releases it while waiting.
+ */
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+   private final Semaphore permits;
+   private final Duration acquireTimeout;
+
+   public ConcurrencyLimitFilter(int maxConcurrentRequests, Duration acquireTimeout) {
+      this.permits = new Semaphore(maxConcurrentRequests, true);
+      this.acquireTimeout = acquireTimeout;
+   }
+
+   @Override
+   protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                   @NonNull FilterChain filterChain) throws ServletException, IOException {
+      boolean acquired;
+      try {
+         acquired = permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         acquired = false;
+      }
+      if (!acquired) {
+         log.info("Rejected {} {}, too many concurrent requests", request.getMethod(), request.getRequestURI());
+         response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+         response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+         return;
+      }
+      try {
+         filterChain.doFilter(request, response);
+      } finally {
+         permits.release();
+      }
+   }
+}
@@ -0,0 +1,21 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+
+import javax.sql.DataSource;
+
+/*
+ * The recipe ids for the RecipeImporter are read from the recipes_seq sequence.
+ * For production, replace the H2 incrementer with the one for the database used.
+ */
+@Configuration
+public class ImportConfiguration {
+
+   @Bean
+   public DataFieldMaxValueIncrementer recipeIdIncrementer(DataSource dataSource) {
+      return new H2SequenceMaxValueIncrementer(dataSource, "recipes_seq");
+   }
+}
@@ -0,0 +1,81 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Records the number of jdbc statements of every request to the API as the "http.server.requests.statements"
+ * metric, tagged with the method and uri pattern like "http.server.requests". Only the statements executed by
+ * the request thread on the datasource of the application are counted, not those of asynchronous requests which
+ * complete on another thread.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class MetricsConfiguration implements WebMvcConfigurer {
+
+   // The name of the datasource bean of Spring Boot, or of the ReplicaConfiguration replacing it.
+   private static final String DATA_SOURCE = "dataSource";
+
+   private final MeterRegistry meterRegistry;
+
+   // The summaries by method and uri pattern.
+   private final Map<List<String>, DistributionSummary> statementCounts = new ConcurrentHashMap<>();
+
+   @Bean
+   public static BeanPostProcessor statementCountingPostProcessor() {
+      return new BeanPostProcessor() {
+         @Override
+         public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+            return bean instanceof DataSource dataSource && beanName.equals(DATA_SOURCE) ?
+               new StatementCountingDataSource(dataSource) : bean;
+         }
+      };
+   }
+
+   @Override
+   public void addInterceptors(InterceptorRegistry registry) {
+      registry.addInterceptor(new HandlerInterceptor() {
+         @Override
+         public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                  @NonNull Object handler) {
+            StatementCountingDataSource.reset();
+            return true;
+         }
+
+         @Override
+         public void afterCompletion(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                     @NonNull Object handler, @Nullable Exception ex) {
+            var pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            var uri = pattern == null ? "UNKNOWN" : pattern.toString();
+            statementCount(request.getMethod(), uri).record(StatementCountingDataSource.getCount());
+         }
+      }).addPathPatterns("/v1/**");
+   }
+
+   // Registered once for every method and uri pattern.
+   private DistributionSummary statementCount(String method, String uri) {
+      return statementCounts.computeIfAbsent(List.of(method, uri), key ->
+         DistributionSummary.builder("http.server.requests.statements")
+                            .description("Number of jdbc statements of a request")
+                            .tag("method", method)
+                            .tag("uri", uri)
+                            .register(meterRegistry));
+   }
+}
@@ -0,0 +1,74 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.lambdatree.recipepicker.domain.ReactiveRecipeRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+
+/*
+ * The reactive stack, active when the application runs on WebFlux (the "reactive" profile), see
+ * ReactiveRecipeController.
+ *
+ * The r2dbc connection factory is not a bean: Spring Boot leaves out the datasource if there is one, and JPA, Flyway
+ * and the RecipeService still need the datasource. R2dbcAutoConfiguration is excluded for the same reason, so the
+ * connections are pooled here, with the recipe-picker.reactive.pool settings.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveConfiguration {
+
+   private final RecipePickerProperties recipePickerProperties;
+
+   private ConnectionPool connectionPool;
+
+   // Spring Boot would run WebFlux on Tomcat, which is on the classpath for the servlet stack.
+   @Bean
+   public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+      return new NettyReactiveWebServerFactory();
+   }
+
+   @Bean
+   public ReactiveRecipeRepository reactiveRecipeRepository(DataSourceProperties dataSourceProperties) {
+      var reactive = recipePickerProperties.getReactive();
+      var options = ConnectionFactoryOptions.parse(reactive.getUrl())
+                                            .mutate()
+                                            .option(ConnectionFactoryOptions.USER,
+                                                    dataSourceProperties.determineUsername())
+                                            .option(ConnectionFactoryOptions.PASSWORD,
+                                                    dataSourceProperties.determinePassword())
+                                            .build();
+      // The embedded H2 executes a statement on the calling thread, a driver for a database server doesn't block.
+      var blocking = "h2".equals(options.getValue(ConnectionFactoryOptions.DRIVER));
+      log.info("Using r2dbc driver {} for the reactive API", options.getValue(ConnectionFactoryOptions.DRIVER));
+      var pool = reactive.getPool();
+      connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                                                                     .initialSize(pool.getInitialSize())
+                                                                     .maxSize(pool.getMaxSize())
+                                                                     .maxIdleTime(pool.getMaxIdleTime())
+                                                                     .build());
+      return new ReactiveRecipeRepository(DatabaseClient.create(connectionPool),
+                                          blocking ? Schedulers.boundedElastic() : Schedulers.immediate(),
+                                          reactive.getBatchSize());
+   }
+
+   @PreDestroy
+   public void closeConnectionPool() {
+      if (connectionPool != null) {
+         connectionPool.dispose();
+      }
+   }
+}
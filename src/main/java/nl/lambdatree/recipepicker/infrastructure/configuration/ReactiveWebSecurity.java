@@ -0,0 +1,49 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+/*
+ * The same security as WebSecurity, for the reactive stack.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveWebSecurity {
+
+   private final RecipePickerProperties recipePickerProperties;
+
+   @Bean
+   public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+      return http.securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                 .csrf().disable()
+                 .authorizeExchange(e -> e.pathMatchers("/v2/**", "/actuator/metrics/**", "/actuator/prometheus")
+                                          .hasRole("USER")
+                                          .anyExchange()
+                                          .permitAll())
+                 .httpBasic(Customizer.withDefaults())
+                 .build();
+   }
+
+   @Bean
+   public ReactiveUserDetailsService userDetailsService() {
+      @SuppressWarnings("deprecation") UserDetails user = User.withDefaultPasswordEncoder() // Not for production.
+                                                              .username(recipePickerProperties.getUser())
+                                                              .password(recipePickerProperties.getPassword())
+                                                              .roles("USER")
+                                                              .build();
+      return new MapReactiveUserDetailsService(user);
+   }
+}
@@ -0,0 +1,60 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/*
+ * Hands a client which changed something the heartbeat a replica needs to have that change, as a cookie. The reads of
+ * the requests with the cookie use the primary database until a replica has that beat, on every instance of the
+ * service, see ReplicaSet. The cookie expires when every available replica should have the beat.
+ */
+@RequiredArgsConstructor
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+   public static final String COOKIE = "replica-beat";
+
+   private final ReplicaSet replicaSet;
+   private final Duration maxAge;
+
+   @Override
+   protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                   @NonNull FilterChain filterChain) throws ServletException, IOException {
+      replicaSet.startClient(requiredBeat(request), beat -> {
+         var cookie = new Cookie(COOKIE, Long.toString(beat));
+         cookie.setPath("/");
+         cookie.setHttpOnly(true);
+         cookie.setMaxAge((int) maxAge.toSeconds());
+         response.addCookie(cookie);
+      });
+      try {
+         filterChain.doFilter(request, response);
+      } finally {
+         replicaSet.endClient();
+      }
+   }
+
+   // An invalid cookie is ignored, like a missing one. ReplicaSet ignores a beat which can't be required yet.
+   private static long requiredBeat(HttpServletRequest request) {
+      if (request.getCookies() != null) {
+         for (var cookie : request.getCookies()) {
+            if (cookie.getName().equals(COOKIE)) {
+               try {
+                  return Long.parseLong(cookie.getValue());
+               } catch (NumberFormatException e) {
+                  return 0;
+               }
+            }
+         }
+      }
+      return 0;
+   }
+}
@@ -1,9 +1,15 @@
 package nl.lambdatree.recipepicker.infrastructure.configuration;
 
 import lombok.Data;
+import nl.lambdatree.recipepicker.domain.ShardedRecipeSearchEngine;
+import nl.lambdatree.recipepicker.domain.TextMode;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @ConfigurationProperties(prefix = "recipe-picker")
@@ -11,4 +17,99 @@ public class RecipePickerProperties {
    private URI baseUrl;
    private String user;
    private String password;
+   private Search search = new Search();
+   private RecipeCache recipeCache = new RecipeCache();
+   private RecipeImport recipeImport = new RecipeImport();
+   private Changes changes = new Changes();
+   private VirtualThreads virtualThreads = new VirtualThreads();
+   private ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+   private Reactive reactive = new Reactive();
+   private Replicas replicas = new Replicas();
+
+   @Data
+   public static class Search {
+      private SearchEngineType engine = SearchEngineType.JPQL;
+      private int defaultPageSize = 100;
+      private int maxPageSize = 1000;
+      private int resultCacheSize = 0;
+      private Duration resultCacheTimeToLive = Duration.ofMinutes(1);
+      private TextMode textMode = TextMode.SUBSTRING;
+      private Shards shards = new Shards();
+
+      @Data
+      public static class Shards {
+         private int count = 4;
+         // The jdbc url of a shard, with its number (from 0) in place of the %d.
+         private String url = "jdbc:h2:mem:recipe-shard-%d";
+         private ShardedRecipeSearchEngine.Partitioning partitioning = ShardedRecipeSearchEngine.Partitioning.ID;
+         // Queries on the shards running at the same time.
+         private int threads = 16;
+      }
+   }
+
+   @Data
+   public static class RecipeCache {
+      private DataSize capacity = DataSize.ofMegabytes(16);
+      private Duration timeToLive = Duration.ofMinutes(10);
+   }
+
+   @Data
+   public static class RecipeImport {
+      private int batchSize = 500;
+   }
+
+   @Data
+   public static class Changes {
+      private int maxPageSize = 1000;
+      private Duration maxWait = Duration.ofSeconds(30);
+   }
+
+   @Data
+   public static class VirtualThreads {
+      private boolean enabled = false;
+   }
+
+   @Data
+   public static class ConcurrencyLimit {
+      // Also enabled with virtual threads.
+      private boolean enabled = false;
+      // Requests handled at the same time, 0 for the maximum size of the connection pool.
+      private int maxConcurrentRequests = 0;
+      private Duration acquireTimeout = Duration.ofSeconds(1);
+   }
+
+   @Data
+   public static class Reactive {
+      // The r2dbc url of the database of the datasource, used with the same username and password.
+      private String url;
+      // Number of recipes of a search for which the ingredients are fetched with a single query.
+      private int batchSize = 100;
+      private Pool pool = new Pool();
+
+      @Data
+      public static class Pool {
+         private int initialSize = 1;
+         private int maxSize = 10;
+         // Idle connections are closed after this time, down to the initial size.
+         private Duration maxIdleTime = Duration.ofMinutes(30);
+      }
+   }
+
+   @Data
+   public static class Replicas {
+      private boolean enabled = false;
+      // The jdbc urls of the read replicas, used with the username and password of the datasource.
+      private List<String> urls = new ArrayList<>();
+      private Duration checkInterval = Duration.ofSeconds(1);
+      // How far a replica may be behind the primary database, measured with a resolution of the check interval.
+      private Duration maxLag = Duration.ofSeconds(5);
+      // After a change only read from the replicas which have it.
+      private boolean readYourWrites = true;
+   }
+
+   public enum SearchEngineType {
+      JPQL,      /* Query the database directly. */
+      IN_MEMORY, /* Use an in-memory index, only load the matching recipes from the database. */
+      SHARDED    /* Query the shards holding part of the recipes in parallel, only load the matching recipes. */
+   }
 }
@@ -0,0 +1,53 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * The databases of the ShardedRecipeSearchEngine, each with its own connection pool and migrated with the scripts in
+ * db/shard, and the threads which query them in parallel.
+ *
+ * The shard datasources are not beans: Spring Boot leaves out the primary datasource if there is one.
+ */
+@Slf4j
+public class RecipeShards implements AutoCloseable {
+
+   @Getter
+   private final List<DataSource> dataSources = new ArrayList<>();
+
+   @Getter
+   private final ExecutorService executor;
+
+   public RecipeShards(RecipePickerProperties.Search.Shards shards, String username, String password) {
+      for (int i = 0; i < shards.getCount(); i++) {
+         var dataSource = new HikariDataSource();
+         dataSource.setPoolName("recipe-shard-" + i);
+         dataSource.setJdbcUrl(String.format(shards.getUrl(), i));
+         dataSource.setUsername(username);
+         dataSource.setPassword(password);
+         dataSources.add(dataSource);
+         Flyway.configure()
+               .dataSource(dataSource)
+               .locations("classpath:db/shard")
+               .load()
+               .migrate();
+      }
+      executor = Executors.newFixedThreadPool(shards.getThreads(), new CustomizableThreadFactory("recipe-shard-"));
+      log.info("Using {} recipe shards at {}", shards.getCount(), shards.getUrl());
+   }
+
+   @Override
+   public void close() {
+      executor.shutdown();
+      dataSources.forEach(dataSource -> ((HikariDataSource) dataSource).close());
+   }
+}
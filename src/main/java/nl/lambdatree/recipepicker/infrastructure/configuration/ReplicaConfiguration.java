@@ -0,0 +1,90 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+
+/*
+ * Routes the read only transactions to the read replicas of the database when recipe-picker.replicas.enabled is set,
+ * see ReplicaSet. The read only operations of the API use read only transactions.
+ *
+ * Replaces the datasource of Spring Boot: the primary database is configured with the spring.datasource properties as
+ * usual, the replicas use the same username, password and pool settings. The replica datasources are not beans, Spring
+ * Boot would leave out the datasource of the application.
+ */
+@Configuration
+@ConditionalOnProperty(name = "recipe-picker.replicas.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ReplicaConfiguration {
+
+   private final RecipePickerProperties recipePickerProperties;
+
+   @Bean
+   public ReplicaSet replicaSet(DataSourceProperties dataSourceProperties, Environment environment) {
+      var properties = recipePickerProperties.getReplicas();
+      var primary = createDataSource(dataSourceProperties, dataSourceProperties.determineUrl(), "primary",
+                                     environment);
+      var replicas = new LinkedHashMap<String, DataSource>();
+      for (int i = 0; i < properties.getUrls().size(); i++) {
+         var name = "replica-" + i;
+         replicas.put(name, createDataSource(dataSourceProperties, properties.getUrls().get(i), name, environment));
+      }
+      log.info("Routing the read only transactions to {} replicas at {}", replicas.size(), properties.getUrls());
+      return new ReplicaSet(primary, replicas, properties.getCheckInterval(), properties.getMaxLag(),
+                            properties.isReadYourWrites());
+   }
+
+   @Bean
+   public DataSource dataSource(ReplicaSet replicaSet) {
+      return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(replicaSet));
+   }
+
+   // A replica which has the required beat is at most max-lag and a check behind the beat after it.
+   @Bean
+   @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+   @ConditionalOnProperty(name = "recipe-picker.replicas.read-your-writes", havingValue = "true", matchIfMissing = true)
+   public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReplicaSet replicaSet) {
+      var properties = recipePickerProperties.getReplicas();
+      var maxAge = properties.getMaxLag().plus(properties.getCheckInterval().multipliedBy(2));
+      var registration = new FilterRegistrationBean<>(new ReadYourWritesFilter(replicaSet, maxAge));
+      registration.addUrlPatterns("/v1/*");
+      return registration;
+   }
+
+   @Bean
+   public MeterBinder replicaLagMetrics(ReplicaSet replicaSet) {
+      return registry -> replicaSet.getLags().keySet().forEach(
+         name -> Gauge.builder("recipe.replica.lag", replicaSet, set -> set.getLags().get(name).toMillis() / 1000.0)
+                      .tag("replica", name)
+                      .baseUnit("seconds")
+                      .description("How long the replica was behind the primary database at the last check")
+                      .register(registry));
+   }
+
+   private static HikariDataSource createDataSource(DataSourceProperties dataSourceProperties, String url, String name,
+                                                    Environment environment) {
+      var dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                                           .type(HikariDataSource.class)
+                                           .url(url)
+                                           .build();
+      Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+      dataSource.setPoolName(name);
+      return dataSource;
+   }
+}
@@ -0,0 +1,44 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.lang.NonNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/*
+ * Takes each connection from the database the ReplicaSet selects for the current transaction.
+ *
+ * The transaction manager fetches the connection when the transaction begins, before it is marked as read only. Wrap
+ * this datasource in a LazyConnectionDataSourceProxy, which only fetches the connection at the first statement.
+ */
+@RequiredArgsConstructor
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+   private final ReplicaSet replicaSet;
+
+   @Override
+   @NonNull
+   public Connection getConnection() throws SQLException {
+      return replicaSet.select().getConnection();
+   }
+
+   @Override
+   @NonNull
+   public Connection getConnection(@NonNull String username, @NonNull String password) throws SQLException {
+      return replicaSet.select().getConnection(username, password);
+   }
+
+   // Unwrap to the primary database, e.g. for the size of its connection pool.
+   @Override
+   @NonNull
+   public <T> T unwrap(@NonNull Class<T> type) throws SQLException {
+      return type.isInstance(this) ? type.cast(this) : replicaSet.getPrimary().unwrap(type);
+   }
+
+   @Override
+   public boolean isWrapperFor(@NonNull Class<?> type) throws SQLException {
+      return type.isInstance(this) || replicaSet.getPrimary().isWrapperFor(type);
+   }
+}
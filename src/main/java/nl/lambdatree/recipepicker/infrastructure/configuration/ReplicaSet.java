@@ -0,0 +1,297 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+/*
+ * The primary database and its read replicas, selects the database for a connection of the ReplicaRoutingDataSource.
+ *
+ * Read only transactions use the replicas round-robin, everything else (including statements outside of a
+ * transaction) uses the primary database.
+ *
+ * The replicas are checked with a heartbeat: every check reads the beat of each replica, then increments the beat in
+ * the replica_heartbeat table of the primary database. A replica is only used if it answers and its beat is at most
+ * max-lag older than the last beat of the primary, so the lag is measured with a resolution of the check interval.
+ *
+ * With read-your-writes, a transaction which commits a change requires the beat after the next one: that beat is
+ * written after the change, so a replica which has it has the change too. Until then the reads of this instance use the
+ * primary database, so the caches of this instance (which are invalidated on a commit) aren't filled again with the
+ * state before the change. Only the transactions which execute a statement other than a select count as a change.
+ * The required beat is handed to the client of the change as well (see ReadYourWritesFilter), so its reads on the
+ * other instances wait for it too.
+ */
+@Slf4j
+public class ReplicaSet implements AutoCloseable {
+
+   private static final String SELECT_BEAT = "select beat, beat_at from replica_heartbeat";
+   private static final RowMapper<Beat> BEAT_MAPPER =
+      (resultSet, row) -> new Beat(resultSet.getLong(1), resultSet.getTimestamp(2).toInstant());
+
+   // The methods of a connection and a statement which are given the sql of a statement.
+   private static final Set<String> PREPARE_METHODS = Set.of("prepareStatement", "prepareCall");
+   private static final Set<String> EXECUTE_METHODS =
+      Set.of("execute", "executeUpdate", "executeLargeUpdate", "executeQuery", "addBatch");
+
+   private final DataSource primary;
+   private final JdbcTemplate primaryJdbc;
+   private final List<Replica> replicas;
+   private final Duration checkInterval;
+   private final Duration maxLag;
+   private final boolean readYourWrites;
+
+   private final AtomicInteger next = new AtomicInteger();
+
+   // The primary database for the transactions which may change something, noting whether they do.
+   private final DataSource writeTrackingPrimary;
+
+   // The last beat of the primary database, and the beat a replica needs to have the changes of this instance.
+   private volatile Beat primaryBeat;
+   private final AtomicLong requiredBeat = new AtomicLong();
+
+   // The client of the request handled by the current thread, if any.
+   private final ThreadLocal<Client> client = new ThreadLocal<>();
+
+   private final ScheduledExecutorService checker =
+      Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replica-check-"));
+
+   private record Beat(long beat, Instant at) {
+   }
+
+   // The beat a client needs to read its own changes, and where to hand it a higher one.
+   private static class Client {
+      long requiredBeat;
+      final LongConsumer onRequire;
+
+      Client(long requiredBeat, LongConsumer onRequire) {
+         this.requiredBeat = requiredBeat;
+         this.onRequire = onRequire;
+      }
+   }
+
+   private static class Replica {
+      final String name;
+      final DataSource dataSource;
+      final JdbcTemplate jdbc;
+      volatile boolean available;
+      volatile long beat;
+      volatile Duration lag = Duration.ZERO; // At the last check.
+
+      Replica(String name, DataSource dataSource) {
+         this.name = name;
+         this.dataSource = dataSource;
+         this.jdbc = new JdbcTemplate(dataSource);
+      }
+   }
+
+   public ReplicaSet(DataSource primary, Map<String, DataSource> replicas, Duration checkInterval, Duration maxLag,
+                     boolean readYourWrites) {
+      this.primary = primary;
+      this.primaryJdbc = new JdbcTemplate(primary);
+      this.writeTrackingPrimary = new DelegatingDataSource(primary) {
+         @Override
+         @NonNull
+         public Connection getConnection() throws SQLException {
+            return writeTracking(super.getConnection());
+         }
+
+         @Override
+         @NonNull
+         public Connection getConnection(@NonNull String username, @NonNull String password) throws SQLException {
+            return writeTracking(super.getConnection(username, password));
+         }
+      };
+      this.replicas = replicas.entrySet()
+                              .stream()
+                              .map(entry -> new Replica(entry.getKey(), entry.getValue()))
+                              .toList();
+      this.checkInterval = checkInterval;
+      this.maxLag = maxLag;
+      this.readYourWrites = readYourWrites;
+   }
+
+   // The replicas are unavailable until the first checks, which start when the schema of the primary is migrated.
+   @EventListener(ApplicationReadyEvent.class)
+   public void start() {
+      checker.scheduleWithFixedDelay(this::checkReplicas, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+   }
+
+   // The database for a new connection in the current transaction.
+   DataSource select() {
+      if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+         return readYourWrites && TransactionSynchronizationManager.isSynchronizationActive() ?
+            writeTrackingPrimary : primary;
+      }
+      var client = this.client.get();
+      var required = Math.max(requiredBeat.get(), client == null ? 0 : client.requiredBeat);
+      // Start at the next replica in turn and take the first one which is usable.
+      var start = next.getAndIncrement();
+      for (int i = 0; i < replicas.size(); i++) {
+         var replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+         if (replica.available && replica.beat >= required) {
+            return replica.dataSource;
+         }
+      }
+      return primary;
+   }
+
+   DataSource getPrimary() {
+      return primary;
+   }
+
+   // Handle the requests of a client on the current thread, which needs at least the given beat (0 for any).
+   // The client is told the beat it needs after a change with onRequire. The beat comes from the client, a beat
+   // beyond the one a change requires now would keep its reads on the primary database for good, so it is ignored.
+   public void startClient(long requiredBeat, LongConsumer onRequire) {
+      var valid = requiredBeat > 0 && requiredBeat <= changeBeat() ? requiredBeat : 0;
+      client.set(new Client(valid, onRequire));
+   }
+
+   public void endClient() {
+      client.remove();
+   }
+
+   // The beat a replica needs to have a change committed now: the next beat may be written before the change is
+   // committed, the one after it never is.
+   private long changeBeat() {
+      var last = primaryBeat;
+      return (last == null ? 0 : last.beat()) + 2;
+   }
+
+   private void afterChange() {
+      var required = changeBeat();
+      requiredBeat.accumulateAndGet(required, Math::max);
+      var client = this.client.get();
+      if (client != null && required > client.requiredBeat) {
+         client.requiredBeat = required;
+         client.onRequire.accept(required);
+      }
+   }
+
+   // Require the next beats after the commit of the current transaction, once it executes a change.
+   private void changing() {
+      if (!TransactionSynchronizationManager.hasResource(this)) {
+         TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+               afterChange();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+               TransactionSynchronizationManager.unbindResourceIfPossible(ReplicaSet.this);
+            }
+         });
+      }
+   }
+
+   // A connection to the primary database which notes if the current transaction executes a change.
+   private Connection writeTracking(Connection connection) {
+      return (Connection) Proxy.newProxyInstance(
+         ReplicaSet.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if (PREPARE_METHODS.contains(method.getName()) && isChange(args[0])) {
+               changing();
+            }
+            var result = invoke(connection, method, args);
+            // The sql of a plain statement is only known when it's executed.
+            return method.getName().equals("createStatement") ? writeTracking((Statement) result) : result;
+         });
+   }
+
+   private Statement writeTracking(Statement statement) {
+      return (Statement) Proxy.newProxyInstance(
+         ReplicaSet.class.getClassLoader(), new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+            if (EXECUTE_METHODS.contains(method.getName()) && isChange(args[0])) {
+               changing();
+            }
+            return invoke(statement, method, args);
+         });
+   }
+
+   private static boolean isChange(Object sql) {
+      return !(sql instanceof String text) || !text.stripLeading().regionMatches(true, 0, "select", 0, 6);
+   }
+
+   private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+      try {
+         return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+         throw e.getCause();
+      }
+   }
+
+   // Update the availability and lag of the replicas, then write the next beat.
+   public void checkReplicas() {
+      var last = primaryBeat;
+      for (var replica : replicas) {
+         var wasAvailable = replica.available;
+         try {
+            var beat = replica.jdbc.queryForObject(SELECT_BEAT, BEAT_MAPPER);
+            replica.beat = beat.beat();
+            replica.lag = last == null || !last.at().isAfter(beat.at()) ?
+               Duration.ZERO : Duration.between(beat.at(), last.at());
+            replica.available = last != null && replica.lag.compareTo(maxLag) <= 0;
+         } catch (RuntimeException e) {
+            replica.available = false;
+            log.debug("Replica {} doesn't answer", replica.name, e);
+         }
+         if (replica.available != wasAvailable) {
+            log.info("Replica {} is {}, {} behind the primary database", replica.name,
+                     replica.available ? "available" : "unavailable", replica.lag);
+         }
+      }
+      try {
+         primaryJdbc.update("update replica_heartbeat set beat = beat + 1, beat_at = current_timestamp");
+         primaryBeat = primaryJdbc.queryForObject(SELECT_BEAT, BEAT_MAPPER);
+      } catch (RuntimeException e) {
+         log.warn("Can't write the heartbeat of the primary database: {}", e.getMessage());
+      }
+   }
+
+   // How long each replica was behind the primary database at the last check, for the metrics.
+   Map<String, Duration> getLags() {
+      return replicas.stream().collect(Collectors.toMap(replica -> replica.name, replica -> replica.lag));
+   }
+
+   // Closed after the datasource of the application, which uses the databases.
+   @Override
+   public void close() throws Exception {
+      checker.shutdownNow();
+      for (var replica : replicas) {
+         if (replica.dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+         }
+      }
+      if (primary instanceof AutoCloseable closeable) {
+         closeable.close();
+      }
+   }
+}
@@ -0,0 +1,85 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.lambdatree.recipepicker.domain.CachingRecipeSearchEngine;
+import nl.lambdatree.recipepicker.domain.InMemoryRecipeSearchEngine;
+import nl.lambdatree.recipepicker.domain.JpqlRecipeSearchEngine;
+import nl.lambdatree.recipepicker.domain.RecipeRepository;
+import nl.lambdatree.recipepicker.domain.RecipeSearchEngine;
+import nl.lambdatree.recipepicker.domain.ShardedRecipeSearchEngine;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/*
+ * Select the search engine implementation using the recipe-picker.search.engine property, cache its results if
+ * recipe-picker.search.result-cache-size is set. The sharded search engine uses the databases of the RecipeShards,
+ * which are only created for it.
+ *
+ * The hits and misses of Hibernate's query plan cache are available as the "hibernate.query.plan.cache" metric when
+ * the hibernate statistics are enabled with spring.jpa.properties.hibernate.generate_statistics, which are off by
+ * default as they are gathered for every session.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class SearchConfiguration {
+
+   private final RecipePickerProperties recipePickerProperties;
+
+   @Bean(initMethod = "rebuild")
+   public RecipeSearchEngine recipeSearchEngine(EntityManager entityManager, RecipeRepository recipeRepository,
+                                                ObjectProvider<RecipeShards> recipeShards) {
+      var search = recipePickerProperties.getSearch();
+      log.info("Using the {} search engine", search.getEngine());
+      var engine = switch (search.getEngine()) {
+         case JPQL -> new JpqlRecipeSearchEngine(entityManager);
+         case IN_MEMORY -> new InMemoryRecipeSearchEngine(entityManager, recipeRepository);
+         case SHARDED -> new ShardedRecipeSearchEngine(entityManager, recipeRepository,
+                                                       recipeShards.getObject().getDataSources(),
+                                                       search.getShards().getPartitioning(),
+                                                       recipeShards.getObject().getExecutor());
+      };
+      if (search.getResultCacheSize() > 0) {
+         log.info("Caching the results of {} searches for {}", search.getResultCacheSize(),
+                  search.getResultCacheTimeToLive());
+         return new CachingRecipeSearchEngine(engine, recipeRepository, search.getResultCacheSize(),
+                                              search.getResultCacheTimeToLive());
+      }
+      return engine;
+   }
+
+   // The shards use the username and password of the primary database.
+   @Bean
+   @ConditionalOnProperty(name = "recipe-picker.search.engine", havingValue = "sharded")
+   public RecipeShards recipeShards(DataSourceProperties dataSourceProperties) {
+      return new RecipeShards(recipePickerProperties.getSearch().getShards(), dataSourceProperties.determineUsername(),
+                              dataSourceProperties.determinePassword());
+   }
+
+   @Bean
+   @ConditionalOnProperty(name = "spring.jpa.properties.hibernate.generate_statistics", havingValue = "true")
+   public MeterBinder queryPlanCacheMetrics(EntityManagerFactory entityManagerFactory) {
+      var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+      return registry -> {
+         FunctionCounter.builder("hibernate.query.plan.cache", statistics, Statistics::getQueryPlanCacheHitCount)
+                        .tag("result", "hit")
+                        .description("Queries of which the parsed plan was cached")
+                        .register(registry);
+         FunctionCounter.builder("hibernate.query.plan.cache", statistics, Statistics::getQueryPlanCacheMissCount)
+                        .tag("result", "miss")
+                        .description("Queries which had to be parsed")
+                        .register(registry);
+      };
+   }
+}
@@ -0,0 +1,62 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Set;
+
+/*
+ * Counts the jdbc statements created by the current thread, for the statement count per request, see
+ * MetricsConfiguration. Counting is a thread local increment, the other connection calls are passed on as they are.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+   private static final Set<String> STATEMENT_METHODS = Set.of("prepareStatement", "createStatement", "prepareCall");
+
+   private static final ThreadLocal<int[]> count = ThreadLocal.withInitial(() -> new int[1]);
+
+   public StatementCountingDataSource(DataSource dataSource) {
+      super(dataSource);
+   }
+
+   // Start counting the statements of the current thread from zero.
+   public static void reset() {
+      count.get()[0] = 0;
+   }
+
+   public static int getCount() {
+      return count.get()[0];
+   }
+
+   @Override
+   public Connection getConnection() throws SQLException {
+      return counting(super.getConnection());
+   }
+
+   @Override
+   public Connection getConnection(String username, String password) throws SQLException {
+      return counting(super.getConnection(username, password));
+   }
+
+   private static Connection counting(Connection connection) {
+      return (Connection) Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(),
+                                                 new Class<?>[]{Connection.class},
+                                                 (proxy, method, args) -> invoke(connection, method, args));
+   }
+
+   private static Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+      if (STATEMENT_METHODS.contains(method.getName())) {
+         count.get()[0]++;
+      }
+      try {
+         return method.invoke(connection, args);
+      } catch (InvocationTargetException e) {
+         throw e.getCause();
+      }
+   }
+}
@@ -0,0 +1,20 @@
+package nl.lambdatree.recipepicker.infrastructure.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/*
+ * Fails the startup when virtual threads are enabled, but the service isn't built with Java 21 or newer: the
+ * VirtualThreadConfiguration is then left out and the requests would run on platform threads.
+ */
+@Configuration
+@ConditionalOnProperty(name = "recipe-picker.virtual-threads.enabled", havingValue = "true")
+@ConditionalOnMissingClass("nl.lambdatree.recipepicker.infrastructure.configuration.VirtualThreadConfiguration")
+public class VirtualThreadCheck {
+
+   public VirtualThreadCheck() {
+      throw new IllegalStateException("recipe-picker.virtual-threads.enabled needs a build with Java 21 or newer " +
+                                         "(the java21 maven profile), this one runs on Java " + Runtime.version());
+   }
+}
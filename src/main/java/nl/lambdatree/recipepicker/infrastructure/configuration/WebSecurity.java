@@ -1,6 +1,7 @@
 package nl.lambdatree.recipepicker.infrastructure.configuration;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
@@ -15,6 +16,7 @@ import org.springframework.security.web.SecurityFilterChain;
 
 @Configuration
 @EnableWebSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class WebSecurity {
 
@@ -28,7 +30,7 @@ public class WebSecurity {
       http.sessionManagement()
           .sessionCreationPolicy(SessionCreationPolicy.NEVER).disable()
           .csrf().disable()
-          .authorizeRequests(r -> r.antMatchers("/v1/**").hasRole("USER"))
+          .authorizeRequests(r -> r.antMatchers("/v1/**", "/actuator/metrics/**", "/actuator/prometheus").hasRole("USER"))
           .httpBasic(Customizer.withDefaults());
 
       return http.build();
@@ -0,0 +1,49 @@
+
+-- baseline schema, applied by flyway. Never change a migration after it is released, add a new version instead.
+
+-- recipe ids are allocated in blocks, the increment must match Recipe.ID_BLOCK_SIZE
+create sequence recipes_seq start with 100 increment by 50;
+
+create table recipes (
+    id bigint primary key, -- from recipes_seq, see Recipe.id
+    name varchar(255) not null,          -- must match Recipe.name constraint
+    instructions varchar(2048) not null, -- must match Recipe.instructions constraint
+    category integer, -- see RecipeCategory for the integer values
+    nof_servings integer,
+    version bigint default 0 not null -- see Recipe.version
+);
+
+create table ingredients (
+    id bigint generated by default as identity primary key,
+    name varchar(255) unique not null -- must match Ingredient.name constraint
+);
+
+-- full-text index of the recipes, see Recipe.terms
+create table recipe_terms (
+    recipe bigint references recipes on delete cascade,
+    term varchar(64) not null, -- must match TextAnalyzer.MAX_TERM_LENGTH
+    weight integer not null,
+    primary key (recipe, term)
+);
+
+create index recipe_terms_term on recipe_terms (term);
+
+create table recipe_ingredient (
+    recipe bigint references recipes on delete cascade,
+    ingredient bigint references ingredients
+);
+
+-- change log of the recipes, see RecipeChangeLog
+create table recipe_changes (
+    seq bigint primary key,
+    recipe bigint not null,         -- not a reference, the recipe may be deleted
+    operation varchar(16) not null, -- see RecipeChangedEvent.Operation
+    changed_at timestamp not null
+);
+
+-- the last sequence number of the change log, a single row which stays locked until a change is committed
+create table recipe_change_seq (
+    seq bigint not null
+);
+
+insert into recipe_change_seq (seq) values (0);
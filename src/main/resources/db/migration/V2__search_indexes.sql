@@ -0,0 +1,27 @@
+-- indexes for the search queries, see JpqlRecipeSearchEngine
+
+-- a recipe has an ingredient at most once, the primary key also serves the lookups by recipe
+create table recipe_ingredient_distinct (
+    recipe bigint not null,
+    ingredient bigint not null
+);
+insert into recipe_ingredient_distinct (recipe, ingredient)
+select recipe, ingredient from recipe_ingredient
+where recipe is not null and ingredient is not null
+group by recipe, ingredient;
+delete from recipe_ingredient;
+insert into recipe_ingredient (recipe, ingredient)
+select recipe, ingredient from recipe_ingredient_distinct;
+drop table recipe_ingredient_distinct;
+alter table recipe_ingredient alter column recipe set not null;
+alter table recipe_ingredient alter column ingredient set not null;
+alter table recipe_ingredient add constraint recipe_ingredient_pk primary key (recipe, ingredient);
+
+-- the include / exclude ingredient filters, which look up the recipes of an ingredient
+create index recipe_ingredient_ingredient on recipe_ingredient (ingredient, recipe);
+
+-- the default order (and keyset) of the search results, and the category / servings filters in that order, the
+-- servings of the category index are last so a search of only a category reads it in that order as well
+create index recipes_name on recipes (name, id);
+create index recipes_category on recipes (category, name, id, nof_servings);
+create index recipes_servings on recipes (nof_servings, name, id);
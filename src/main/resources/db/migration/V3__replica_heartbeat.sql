@@ -0,0 +1,7 @@
+-- heartbeat of the primary database, incremented periodically to measure the lag of the read replicas, see ReplicaSet
+create table replica_heartbeat (
+    beat bigint not null,
+    beat_at timestamp not null
+);
+
+insert into replica_heartbeat (beat, beat_at) values (0, current_timestamp);
@@ -1,5 +1,5 @@
 
--- sample data, only executed for in-memory type databases
+-- sample data, leave db/sample out of spring.flyway.locations for production
 
 insert into recipes (id, name, instructions, category, nof_servings)
 values(1, 'Spaghetti Bolognese', 'Boil salted water, brown the meat in a saucepan ...', 1, 4),
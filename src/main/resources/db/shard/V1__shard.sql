@@ -0,0 +1,30 @@
+-- schema of a shard of the ShardedRecipeSearchEngine, applied by flyway. The searchable attributes of part of the
+-- recipes, copied from the tables of the same name in the primary database (see db/migration).
+
+create table recipes (
+    id bigint primary key, -- the id in the primary database
+    name varchar(255) not null,
+    instructions varchar(2048) not null,
+    category integer not null, -- see RecipeCategory for the integer values
+    nof_servings integer not null
+);
+
+create table recipe_ingredient (
+    recipe bigint not null references recipes on delete cascade,
+    ingredient bigint not null, -- not a reference, the ingredients stay in the primary database
+    primary key (recipe, ingredient)
+);
+
+create table recipe_terms (
+    recipe bigint not null references recipes on delete cascade,
+    term varchar(64) not null, -- must match TextAnalyzer.MAX_TERM_LENGTH
+    weight integer not null,
+    primary key (recipe, term)
+);
+
+-- the same indexes as the primary database, for the same search queries
+create index recipe_terms_term on recipe_terms (term);
+create index recipe_ingredient_ingredient on recipe_ingredient (ingredient, recipe);
+create index recipes_name on recipes (name, id);
+create index recipes_category on recipes (category, name, id, nof_servings);
+create index recipes_servings on recipes (nof_servings, name, id);
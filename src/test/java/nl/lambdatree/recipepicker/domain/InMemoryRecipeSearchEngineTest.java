@@ -0,0 +1,186 @@
+package nl.lambdatree.recipepicker.domain;
+
+import nl.lambdatree.recipepicker.FixtureFactory;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Unit test(s) for the bitmap evaluation of the in-memory search engine, without a database.
+ */
+public class InMemoryRecipeSearchEngineTest {
+
+   // Bytes of ingredient index per million recipe-ingredient rows.
+   private static final long MEMORY_BUDGET_PER_MILLION_ROWS = 4 * 1024 * 1024;
+
+   private final Map<Long, Recipe> recipes = new HashMap<>();
+   private final RecipeRepository recipeRepository = mock(RecipeRepository.class);
+   private final InMemoryRecipeSearchEngine engine = new InMemoryRecipeSearchEngine(null, recipeRepository);
+
+   @Test
+   public void shouldEvaluateIncludeAsAndAndExcludeAsOr() {
+      when(recipeRepository.findAllById(anyIterable())).thenAnswer(this::findAllById);
+      var bolognese = index(1L, FixtureFactory.spaghettiBolognese(FixtureFactory.mincedBeef(),
+                                                                   FixtureFactory.cannedTomatoes(),
+                                                                   FixtureFactory.onions()));
+      var curry = index(2L, FixtureFactory.curry(FixtureFactory.chickPeas(),
+                                                 FixtureFactory.cannedTomatoes(),
+                                                 FixtureFactory.onions()));
+
+      assertThat(engine.search(criteria(Set.of(2L, 3L), Set.of()))).containsExactly(curry, bolognese);
+      assertThat(engine.search(criteria(Set.of(1L, 4L), Set.of()))).isEmpty();
+      assertThat(engine.search(criteria(Set.of(2L), Set.of(1L)))).containsExactly(curry);
+      assertThat(engine.search(criteria(Set.of(), Set.of(1L, 4L)))).isEmpty();
+      // Excluding must not modify the posting list of the single included ingredient.
+      assertThat(engine.search(criteria(Set.of(2L), Set.of()))).containsExactly(curry, bolognese);
+
+      var vegan = RecipeSearchCriteria.builder()
+                                      .category(RecipeCategory.VEGAN)
+                                      .nofServings(6)
+                                      .build();
+      assertThat(engine.search(vegan)).containsExactly(curry);
+   }
+
+   @Test
+   public void shouldPageInTheSortOrder() {
+      var random = new Random(42);
+      for (long id = 1; id <= 1000; id++) {
+         index(id, Recipe.builder()
+                         .name("Recipe " + random.nextInt(100))
+                         .instructions("Mix it")
+                         .category(RecipeCategory.values()[random.nextInt(RecipeCategory.values().length)])
+                         .nofServings(1 + random.nextInt(8))
+                         .ingredients(Set.of(Ingredient.builder().id(1L).build()))
+                         .build());
+      }
+      var criteria = RecipeSearchCriteria.builder().build();
+      for (var sort : List.of(RecipePageRequest.DEFAULT_SORT,
+                              List.of(RecipeSortOrder.desc(RecipeSortKey.NOF_SERVINGS),
+                                      RecipeSortOrder.asc(RecipeSortKey.CATEGORY)))) {
+         var expected = engine.searchSummaries(criteria, RecipePageRequest.builder().sort(sort).build()).getRecipes();
+         assertThat(expected).hasSize(1000);
+
+         // The pages selected from all the matches should add up to the sorted matches.
+         var pageRequest = RecipePageRequest.builder().limit(7).sort(sort).build();
+         var found = new ArrayList<RecipeSummary>();
+         do {
+            var page = engine.searchSummaries(criteria, pageRequest);
+            assertThat(page.getRecipes()).hasSizeLessThanOrEqualTo(7);
+            found.addAll(page.getRecipes());
+            pageRequest = page.getNext() == null ? null : pageRequest.toBuilder().after(page.getNext()).build();
+         } while (pageRequest != null);
+         assertThat(found).as(sort.toString()).isEqualTo(expected);
+      }
+
+      // Candidates like "Recipe 21" are dropped by the verification of the text, and replaced by the next ones.
+      when(recipeRepository.findAllById(anyIterable())).thenAnswer(this::findAllById);
+      var text = RecipeSearchCriteria.builder().text("Recipe 1").build();
+      var expected = engine.search(text, RecipePageRequest.unlimited()).getRecipes();
+      assertThat(expected).isNotEmpty().allMatch(recipe -> recipe.getName().startsWith("Recipe 1"));
+      var pageRequest = RecipePageRequest.builder().limit(3).build();
+      var found = new ArrayList<Recipe>();
+      do {
+         var page = engine.search(text, pageRequest);
+         found.addAll(page.getRecipes());
+         pageRequest = page.getNext() == null ? null : pageRequest.toBuilder().after(page.getNext()).build();
+      } while (pageRequest != null);
+      assertThat(found).isEqualTo(expected);
+   }
+
+   @Test
+   public void shouldIgnoreChangesHandledOutOfOrder() {
+      var byName = RecipeSearchCriteria.builder().text("curry").build();
+      index(1L, FixtureFactory.curry(FixtureFactory.chickPeas(), FixtureFactory.onions()));
+
+      // Version 2 is committed before version 3, but handled after it.
+      engine.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.Operation.UPDATED, 1L, 3,
+                                                    curry(RecipeCategory.MEAT)));
+      engine.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.Operation.UPDATED, 1L, 2,
+                                                    curry(RecipeCategory.VEGETARIAN)));
+      assertThat(engine.searchSummaries(byName, RecipePageRequest.unlimited()).getRecipes())
+         .extracting(RecipeSummary::getCategory)
+         .containsExactly(RecipeCategory.MEAT);
+
+      // An update handled after the deletion doesn't bring the recipe back.
+      engine.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.Operation.DELETED, 1L, 5, null));
+      engine.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.Operation.UPDATED, 1L, 4,
+                                                    curry(RecipeCategory.VEGAN)));
+      assertThat(engine.searchSummaries(byName, RecipePageRequest.unlimited()).getRecipes()).isEmpty();
+   }
+
+   @Test
+   public void shouldStayWithinMemoryBudget() {
+      // A million recipe-ingredient rows: 100k recipes with 10 ingredients each, from 5000 ingredients.
+      var random = new Random(42);
+      var nofRows = 0L;
+      for (long id = 1; id <= 100_000; id++) {
+         var ingredientIds = new HashSet<Long>();
+         while (ingredientIds.size() < 10) {
+            ingredientIds.add((long) random.nextInt(5000));
+         }
+         nofRows += ingredientIds.size();
+         var recipe = Recipe.builder()
+                            .id(id)
+                            .name("Recipe " + id)
+                            .instructions("Mix it")
+                            .category(RecipeCategory.MEAT)
+                            .nofServings(4)
+                            .ingredients(ingredientIds.stream()
+                                                      .map(i -> Ingredient.builder().id(i).build())
+                                                      .collect(Collectors.toSet()))
+                            .build();
+         engine.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.Operation.CREATED, id, 0, recipe));
+      }
+
+      assertThat(engine.getIngredientIndexSizeInBytes() * 1_000_000 / nofRows)
+         .isLessThan(MEMORY_BUDGET_PER_MILLION_ROWS);
+
+      // Removing everything again should leave an empty index.
+      LongStream.rangeClosed(1, 100_000)
+                .forEach(id -> engine.onRecipeChanged(
+                   new RecipeChangedEvent(RecipeChangedEvent.Operation.DELETED, id, 0, null)));
+      assertThat(engine.getIngredientIndexSizeInBytes()).isZero();
+   }
+
+   private Recipe index(long id, Recipe recipe) {
+      recipe.setId(id);
+      recipes.put(id, recipe);
+      engine.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.Operation.CREATED, id, 0, recipe));
+      return recipe;
+   }
+
+   private static Recipe curry(RecipeCategory category) {
+      var curry = FixtureFactory.curry(FixtureFactory.chickPeas(), FixtureFactory.onions());
+      curry.setId(1L);
+      curry.setCategory(category);
+      return curry;
+   }
+
+   private Iterable<Recipe> findAllById(InvocationOnMock invocation) {
+      Iterable<Long> ids = invocation.getArgument(0);
+      var found = new HashSet<Recipe>();
+      ids.forEach(id -> found.add(recipes.get(id)));
+      return found;
+   }
+
+   private static RecipeSearchCriteria criteria(Set<Long> include, Set<Long> exclude) {
+      return RecipeSearchCriteria.builder()
+                                 .includeIngredientIds(include)
+                                 .excludeIngredientIds(exclude)
+                                 .build();
+   }
+}
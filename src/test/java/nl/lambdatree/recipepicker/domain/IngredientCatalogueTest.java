@@ -0,0 +1,35 @@
+package nl.lambdatree.recipepicker.domain;
+
+import nl.lambdatree.recipepicker.FixtureFactory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Unit test(s) for the reloading of the ingredient catalogue, without a database.
+ */
+public class IngredientCatalogueTest {
+
+   private final IngredientRepository ingredientRepository = mock(IngredientRepository.class);
+
+   @Test
+   public void shouldReloadAfterTheMaximumAge() {
+      // Milk is added without the entity listener noticing, like by another instance.
+      when(ingredientRepository.findAll()).thenReturn(List.of(FixtureFactory.onions()),
+                                                      List.of(FixtureFactory.onions(), FixtureFactory.milk()));
+
+      var catalogue = new IngredientCatalogue(ingredientRepository, Duration.ofHours(1));
+      var eTag = catalogue.getSnapshot().getETag();
+      assertThat(catalogue.getSnapshot().findById(FixtureFactory.milk().getId())).isEmpty();
+      assertThat(catalogue.getSnapshot().getETag()).isEqualTo(eTag);
+
+      var expired = new IngredientCatalogue(ingredientRepository, Duration.ZERO);
+      assertThat(expired.getSnapshot().findById(FixtureFactory.milk().getId())).isPresent();
+      assertThat(expired.getSnapshot().getETag()).isNotEqualTo(eTag);
+   }
+}
@@ -18,7 +18,7 @@ public class RecipeServiceTest {
       var include = Set.of(FixtureFactory.mincedBeef(), FixtureFactory.onions());
       var exclude = Set.of(FixtureFactory.cannedTomatoes(), FixtureFactory.onions());
 
-      var service = new RecipeService(null, null);
+      var service = new RecipeService(null, null, null);
       service.checkForOverlap(Set.of(), Set.of()); // empty sets shouldn't give an error
 
       assertThatThrownBy(() -> service.checkForOverlap(include, exclude))
@@ -0,0 +1,28 @@
+package nl.lambdatree.recipepicker.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Unit test(s) for the merge of the shard results of the sharded search engine, without a database.
+ */
+public class ShardedRecipeSearchEngineTest {
+
+   @Test
+   public void shouldMergeTheSortedResultsUpToTheLimit() {
+      var shards = List.of(List.of(1, 4, 7, 8), List.<Integer>of(), List.of(2, 3, 9), List.of(5, 6));
+
+      var merged = ShardedRecipeSearchEngine.merge(shards, Comparator.<Integer>naturalOrder(), Integer.MAX_VALUE);
+      assertThat(merged).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+      merged = ShardedRecipeSearchEngine.merge(shards, Comparator.<Integer>naturalOrder(), 4);
+      assertThat(merged).containsExactly(1, 2, 3, 4);
+
+      merged = ShardedRecipeSearchEngine.merge(shards, Comparator.<Integer>naturalOrder(), 0);
+      assertThat(merged).isEmpty();
+   }
+}
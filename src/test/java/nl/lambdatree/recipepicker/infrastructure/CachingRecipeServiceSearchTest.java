@@ -0,0 +1,64 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import nl.lambdatree.recipepicker.FixtureFactory;
+import nl.lambdatree.recipepicker.domain.CachingRecipeSearchEngine;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.RecipeSearchEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Run the search tests with the search result cache enabled, which should give identical results.
+ */
+@TestPropertySource(properties = {
+   "recipe-picker.search.result-cache-size=100",
+   "recipe-picker.search.result-cache-time-to-live=3s",
+   "spring.datasource.url=jdbc:h2:mem:caching-search-test"
+})
+public class CachingRecipeServiceSearchTest extends RecipeServiceSearchTest {
+
+   @Autowired
+   private RecipeSearchEngine recipeSearchEngine;
+
+   @BeforeEach
+   public void clearCache() {
+      // The fixtures are saved using the repositories directly, bypassing the events of the RecipeService.
+      assertThat(recipeSearchEngine).isInstanceOf(CachingRecipeSearchEngine.class);
+      recipeSearchEngine.rebuild();
+   }
+
+   @Test
+   public void testOnlyAffectedSearchesAreInvalidated() throws Exception {
+      var result = recipeService.search("GLAZE", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).containsExactly(curry);
+
+      // Bypass the service, the cached search (with a differently cased text) still returns the curry until it
+      // expires.
+      curry.setInstructions("Soak the peas in salted water, fry the onions ...");
+      recipeRepository.save(curry);
+      var pancakes = recipeService.create(FixtureFactory.spaghettiBolognese(milk, flour));
+      result = recipeService.search("glaze", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).extracting("id").containsExactly(curry.getId());
+      Thread.sleep(3100);
+      result = recipeService.search("glaze", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).isEmpty();
+
+      // A change to a recipe which matches the criteria invalidates the search.
+      pancakes.setName("Pancakes");
+      pancakes.setInstructions("Mix milk and flour, glaze with syrup ...");
+      recipeService.update(pancakes.getId(), pancakes);
+      result = recipeService.search("glaze", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).extracting("id").containsExactly(pancakes.getId());
+
+      // As does deleting a recipe found by the search.
+      recipeService.delete(pancakes.getId());
+      result = recipeService.search("glaze", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).isEmpty();
+   }
+}
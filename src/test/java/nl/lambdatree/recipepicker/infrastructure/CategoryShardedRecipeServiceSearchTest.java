@@ -0,0 +1,15 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import org.springframework.test.context.TestPropertySource;
+
+/*
+ * Run the search tests against the sharded search engine with the recipes partitioned by category, a search with a
+ * category only queries a single shard.
+ */
+@TestPropertySource(properties = {
+   "recipe-picker.search.shards.partitioning=category",
+   "recipe-picker.search.shards.url=jdbc:h2:mem:category-sharded-search-test-%d",
+   "spring.datasource.url=jdbc:h2:mem:category-sharded-search-test"
+})
+public class CategoryShardedRecipeServiceSearchTest extends ShardedRecipeServiceSearchTest {
+}
@@ -0,0 +1,102 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.lambdatree.recipepicker.BaseInfrastructureTest;
+import nl.lambdatree.recipepicker.domain.Ingredient;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.infrastructure.api.Recipe;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * The API with application/cbor, which encodes the ingredients of a recipe by their id.
+ */
+public class CompactEncodingTest extends BaseInfrastructureTest {
+
+   @Autowired
+   private MappingJackson2CborHttpMessageConverter cborConverter;
+
+   @Test
+   public void testSearch() throws Exception {
+      var recipes = get("/v1/recipes");
+      assertThat(recipes.findValuesAsText("name")).containsExactly("Curry", "Spaghetti Bolognese");
+      var curryJson = recipes.get(0);
+      assertThat(curryJson.get("id").asLong()).isEqualTo(curry.getId());
+      assertThat(curryJson.get("category").asText()).isEqualTo(RecipeCategory.VEGAN.name());
+      assertThat(ingredientIds(curryJson)).isEqualTo(ids(curry.getIngredients()));
+   }
+
+   @Test
+   public void testGetRecipe() throws Exception {
+      var recipe = get("/v1/recipes/" + spaghettiBolognese.getId());
+      assertThat(recipe.get("name").asText()).isEqualTo("Spaghetti Bolognese");
+      assertThat(ingredientIds(recipe)).isEqualTo(ids(spaghettiBolognese.getIngredients()));
+   }
+
+   @Test
+   public void testIngredientDictionary() throws Exception {
+      var ingredients = get("/v1/ingredients");
+      var names = new HashSet<String>();
+      ingredients.forEach(ingredient -> names.add(ingredient.get("name").asText()));
+      assertThat(names).contains(onions.getName(), chickPeas.getName());
+   }
+
+   @Test
+   public void testCreateRecipe() throws Exception {
+      var recipe = Recipe.builder()
+                         .name("Hummus")
+                         .instructions("Blend the chick peas.")
+                         .category(RecipeCategory.VEGAN)
+                         .nofServings(4)
+                         .ingredients(Set.of(chickPeas))
+                         .build();
+      var headers = requestHeaders();
+      headers.setContentType(MediaType.APPLICATION_CBOR);
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes").build().toUri();
+      var response = restTemplate.exchange(
+         new RequestEntity<>(objectMapper().writeValueAsBytes(recipe), headers, HttpMethod.POST, uri), Void.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+      var created = get(response.getHeaders().getLocation().getPath());
+      assertThat(created.get("name").asText()).isEqualTo("Hummus");
+      assertThat(ingredientIds(created)).containsExactly(chickPeas.getId());
+   }
+
+   private JsonNode get(String path) throws Exception {
+      var headers = requestHeaders();
+      headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+      var uri = UriComponentsBuilder.fromPath(path).build().toUri();
+      var response = restTemplate.exchange(new RequestEntity<>(null, headers, HttpMethod.GET, uri), byte[].class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+      return objectMapper().readTree(response.getBody());
+   }
+
+   private ObjectMapper objectMapper() {
+      return cborConverter.getObjectMapper();
+   }
+
+   private static Set<Long> ingredientIds(JsonNode recipe) {
+      var ids = new HashSet<Long>();
+      recipe.get("ingredients").forEach(id -> ids.add(id.asLong()));
+      return ids;
+   }
+
+   private static Set<Long> ids(Set<Ingredient> ingredients) {
+      return ingredients.stream().map(Ingredient::getId).collect(Collectors.toSet());
+   }
+}
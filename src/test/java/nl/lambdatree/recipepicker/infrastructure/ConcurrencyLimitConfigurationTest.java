@@ -0,0 +1,53 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import nl.lambdatree.recipepicker.infrastructure.configuration.ConcurrencyLimitConfiguration;
+import nl.lambdatree.recipepicker.infrastructure.configuration.RecipePickerProperties;
+import nl.lambdatree.recipepicker.infrastructure.configuration.VirtualThreadCheck;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * The concurrency limit is registered with or without virtual threads, and virtual threads fail the startup of a
+ * build without them.
+ */
+public class ConcurrencyLimitConfigurationTest {
+
+   private final WebApplicationContextRunner contextRunner =
+      new WebApplicationContextRunner().withUserConfiguration(ConcurrencyLimitConfiguration.class,
+                                                              VirtualThreadCheck.class)
+                                       .withBean(DataSource.class, DriverManagerDataSource::new)
+                                       .withUserConfiguration(Properties.class);
+
+   @EnableConfigurationProperties(RecipePickerProperties.class)
+   static class Properties {
+   }
+
+   @Test
+   public void testLimitWithoutVirtualThreads() {
+      contextRunner.run(context -> assertThat(context).doesNotHaveBean(FilterRegistrationBean.class));
+      contextRunner.withPropertyValues("recipe-picker.concurrency-limit.enabled=true",
+                                       "recipe-picker.concurrency-limit.max-concurrent-requests=4")
+                   .run(context -> assertThat(context).hasSingleBean(FilterRegistrationBean.class));
+   }
+
+   @Test
+   public void testVirtualThreadsNeedAJava21Build() {
+      contextRunner.withPropertyValues("recipe-picker.virtual-threads.enabled=true")
+                   .withClassLoader(new FilteredClassLoader(
+                      "nl.lambdatree.recipepicker.infrastructure.configuration.VirtualThreadConfiguration"))
+                   .run(context -> assertThat(context).hasFailed()
+                                                      .getFailure()
+                                                      .hasRootCauseMessage(
+                                                         "recipe-picker.virtual-threads.enabled needs a build with " +
+                                                            "Java 21 or newer (the java21 maven profile), this one " +
+                                                            "runs on Java " + Runtime.version()));
+   }
+}
@@ -0,0 +1,38 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import nl.lambdatree.recipepicker.infrastructure.configuration.ConcurrencyLimitFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * A request which arrives while all permits are taken is rejected, without a Spring context.
+ */
+public class ConcurrencyLimitFilterTest {
+
+   @Test
+   public void testLimit() throws Exception {
+      var filter = new ConcurrencyLimitFilter(1, Duration.ofMillis(10));
+      var rejected = new MockHttpServletResponse();
+
+      // The second request arrives while the first one holds the only permit.
+      var first = new MockHttpServletResponse();
+      filter.doFilter(new MockHttpServletRequest("GET", "/v1/recipes"), first,
+                      (request, response) -> filter.doFilter(new MockHttpServletRequest("GET", "/v1/recipes"),
+                                                             rejected, (r, s) -> {
+                                                             }));
+      assertThat(first.getStatus()).isEqualTo(HttpStatus.OK.value());
+      assertThat(rejected.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+
+      // The permit is released again.
+      var next = new MockHttpServletResponse();
+      filter.doFilter(new MockHttpServletRequest("GET", "/v1/recipes"), next, (request, response) -> {
+      });
+      assertThat(next.getStatus()).isEqualTo(HttpStatus.OK.value());
+   }
+}
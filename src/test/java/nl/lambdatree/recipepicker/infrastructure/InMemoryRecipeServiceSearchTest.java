@@ -0,0 +1,65 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import nl.lambdatree.recipepicker.FixtureFactory;
+import nl.lambdatree.recipepicker.domain.InMemoryRecipeSearchEngine;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.RecipeSearchEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Run the search tests against the in-memory search engine, which should give identical results.
+ */
+@TestPropertySource(properties = {
+   "recipe-picker.search.engine=in-memory",
+   "spring.datasource.url=jdbc:h2:mem:in-memory-search-test"
+})
+public class InMemoryRecipeServiceSearchTest extends RecipeServiceSearchTest {
+
+   @Autowired
+   private RecipeSearchEngine recipeSearchEngine;
+
+   @BeforeEach
+   public void rebuildIndex() {
+      // The fixtures are saved using the repositories directly, bypassing the events of the RecipeService.
+      assertThat(recipeSearchEngine).isInstanceOf(InMemoryRecipeSearchEngine.class);
+      recipeSearchEngine.rebuild();
+   }
+
+   @Test
+   public void testIndexFollowsServiceChanges() {
+      var pancakes = recipeService.create(FixtureFactory.spaghettiBolognese(milk, flour));
+      pancakes.setName("Pancakes");
+      pancakes.setInstructions("Mix milk and flour ...");
+      recipeService.update(pancakes.getId(), pancakes);
+
+      var result = recipeService.search("flour", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).extracting("id").containsExactly(pancakes.getId());
+      result = recipeService.search("", RecipeCategory.ALL, 0, Set.of(milk), Set.of());
+      assertThat(result).extracting("id").containsExactly(pancakes.getId());
+      // Old terms should be gone
+      result = recipeService.search("boil", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).containsExactly(spaghettiBolognese);
+
+      recipeService.delete(pancakes.getId());
+      result = recipeService.search("", RecipeCategory.ALL, 0, Set.of(milk), Set.of());
+      assertThat(result).isEmpty();
+   }
+
+   @Test
+   public void testPhraseSearch() {
+      // Texts with more than one term are verified against the full text.
+      var result = recipeService.search("the peas", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).containsExactly(curry);
+      result = recipeService.search("peas the", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).isEmpty();
+      result = recipeService.search("ted wat", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).containsExactly(curry, spaghettiBolognese);
+   }
+}
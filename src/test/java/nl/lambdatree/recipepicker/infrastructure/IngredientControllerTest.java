@@ -24,6 +24,30 @@ public class IngredientControllerTest extends BaseInfrastructureTest {
       assertThat(ingredients).contains(Ingredient.fromDomain(mincedBeef));
    }
 
+   @Test
+   public void shouldOnlyListChangedIngredients() {
+      var uri = UriComponentsBuilder.fromPath("/v1/ingredients")
+                                    .build()
+                                    .toUri();
+      var response = restTemplate.exchange(new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri),
+                                           String.class);
+      var eTag = response.getHeaders().getETag();
+      assertThat(eTag).isNotNull();
+
+      var headers = requestHeaders();
+      headers.setIfNoneMatch(eTag);
+      response = restTemplate.exchange(new RequestEntity<>(null, headers, HttpMethod.GET, uri), String.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+      assertThat(response.getBody()).isNull();
+
+      // Changes bypassing the api are noticed as well.
+      ingredientRepository.save(nl.lambdatree.recipepicker.domain.Ingredient.builder().name("Sugar").build());
+      response = restTemplate.exchange(new RequestEntity<>(null, headers, HttpMethod.GET, uri), String.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getHeaders().getETag()).isNotEqualTo(eTag);
+      assertThat(response.getBody()).contains("Sugar");
+   }
+
    @Test
    public void shouldCreateIngredient() {
       var uri = UriComponentsBuilder.fromPath("/v1/ingredients")
@@ -0,0 +1,191 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import nl.lambdatree.recipepicker.FixtureFactory;
+import nl.lambdatree.recipepicker.RecipeIngredientRepository;
+import nl.lambdatree.recipepicker.domain.Ingredient;
+import nl.lambdatree.recipepicker.domain.IngredientRepository;
+import nl.lambdatree.recipepicker.domain.ReactiveRecipeRepository;
+import nl.lambdatree.recipepicker.domain.Recipe;
+import nl.lambdatree.recipepicker.domain.RecipeRepository;
+import nl.lambdatree.recipepicker.domain.RecipeSearchCriteria;
+import nl.lambdatree.recipepicker.domain.RecipeSearchEngine;
+import nl.lambdatree.recipepicker.domain.TextMode;
+import nl.lambdatree.recipepicker.infrastructure.api.ErrorCode;
+import nl.lambdatree.recipepicker.infrastructure.api.ErrorResponse;
+import nl.lambdatree.recipepicker.infrastructure.configuration.RecipePickerProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * The read only API of the reactive stack, which should find the same recipes as the search engine of the servlet
+ * stack.
+ */
+@ActiveProfiles({"test", "reactive"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+   "spring.datasource.url=jdbc:h2:mem:reactive-test",
+   "recipe-picker.reactive.url=r2dbc:h2:mem:///reactive-test?options=LAZY_QUERY_EXECUTION=TRUE",
+   "recipe-picker.reactive.batch-size=1",
+   "recipe-picker.search.default-page-size=1"
+})
+public class ReactiveRecipeControllerTest {
+
+   @Autowired
+   private RecipeRepository recipeRepository;
+
+   @Autowired
+   private IngredientRepository ingredientRepository;
+
+   @Autowired
+   private RecipeIngredientRepository recipeIngredientRepository;
+
+   @Autowired
+   private RecipeSearchEngine recipeSearchEngine;
+
+   @Autowired
+   private ReactiveRecipeRepository reactiveRecipeRepository;
+
+   @Autowired
+   private RecipePickerProperties recipePickerProperties;
+
+   @Autowired
+   private WebTestClient webTestClient;
+
+   private Ingredient mincedBeef, cannedTomatoes, onions, chickPeas;
+   private Recipe spaghettiBolognese, curry;
+
+   @BeforeEach
+   public void cleanRepositories() {
+      recipeRepository.deleteAll();
+      ingredientRepository.deleteAll();
+      recipeIngredientRepository.deleteAll();
+
+      mincedBeef = ingredientRepository.save(FixtureFactory.mincedBeef());
+      cannedTomatoes = ingredientRepository.save(FixtureFactory.cannedTomatoes());
+      onions = ingredientRepository.save(FixtureFactory.onions());
+      chickPeas = ingredientRepository.save(FixtureFactory.chickPeas());
+      spaghettiBolognese = recipeRepository.save(FixtureFactory.spaghettiBolognese(mincedBeef, cannedTomatoes, onions));
+      curry = recipeRepository.save(FixtureFactory.curry(chickPeas, cannedTomatoes, onions));
+   }
+
+   @Test
+   public void getRecipeTest() {
+      var found = get("/v2/recipes/" + curry.getId())
+         .expectStatus().isOk()
+         .expectHeader().valueEquals("ETag", "\"" + curry.getVersion() + "\"")
+         .expectBody(nl.lambdatree.recipepicker.infrastructure.api.Recipe.class)
+         .returnResult()
+         .getResponseBody();
+      assertThat(found).isEqualTo(nl.lambdatree.recipepicker.infrastructure.api.Recipe.fromDomain(curry));
+
+      get("/v2/recipes/" + (curry.getId() + 1000)).expectStatus().isNotFound();
+   }
+
+   @Test
+   public void searchTest() {
+      var recipes = searchIds("/v2/recipes?includeIngredientIds=" + cannedTomatoes.getId());
+      assertThat(recipes).containsExactly(curry.getId(), spaghettiBolognese.getId());
+
+      recipes = searchIds("/v2/recipes?includeIngredientIds=" + cannedTomatoes.getId() + "&limit=1");
+      assertThat(recipes).containsExactly(curry.getId());
+
+      recipes = searchIds("/v2/recipes/summaries?recipeCategory=MEAT");
+      assertThat(recipes).containsExactly(spaghettiBolognese.getId());
+
+      // Unknown ingredients are rejected like in the /v1 API.
+      var error = get("/v2/recipes?includeIngredientIds=1000").expectStatus().isBadRequest()
+                                                               .expectBody(ErrorResponse.class)
+                                                               .returnResult()
+                                                               .getResponseBody();
+      assertThat(error.getErrorCode()).isEqualTo(ErrorCode.INVALID_PARAM);
+
+      webTestClient.get()
+                   .uri("/v2/recipes")
+                   .exchange()
+                   .expectStatus().isEqualTo(HttpStatus.UNAUTHORIZED);
+   }
+
+   @Test
+   public void jsonArraySearchTest() {
+      // Without a limit a json array is limited to the default page size, only a stream has all the recipes.
+      for (var path : List.of("/v2/recipes", "/v2/recipes/summaries")) {
+         var found = webTestClient.get()
+                                  .uri(path + "?includeIngredientIds=" + cannedTomatoes.getId())
+                                  .accept(MediaType.APPLICATION_JSON)
+                                  .headers(headers -> headers.setBasicAuth(recipePickerProperties.getUser(),
+                                                                           recipePickerProperties.getPassword()))
+                                  .exchange()
+                                  .expectStatus().isOk()
+                                  .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                                  .expectBodyList(nl.lambdatree.recipepicker.infrastructure.api.RecipeSummary.class)
+                                  .returnResult()
+                                  .getResponseBody();
+         assertThat(found).as(path)
+                          .extracting(nl.lambdatree.recipepicker.infrastructure.api.RecipeSummary::getId)
+                          .containsExactly(curry.getId());
+         assertThat(searchIds(path + "?includeIngredientIds=" + cannedTomatoes.getId())).as(path).hasSize(2);
+      }
+   }
+
+   @Test
+   public void sameResultsAsSearchEngineTest() {
+      for (var criteria : List.of(RecipeSearchCriteria.builder().text("boiling").textMode(TextMode.FULL_TEXT).build(),
+                                  RecipeSearchCriteria.builder().text("SALTED").build(),
+                                  RecipeSearchCriteria.builder().nofServings(6).build(),
+                                  RecipeSearchCriteria.builder()
+                                                      .includeIngredientIds(Set.of(onions.getId()))
+                                                      .excludeIngredientIds(Set.of(mincedBeef.getId()))
+                                                      .build())) {
+         var expected = recipeSearchEngine.search(criteria)
+                                          .stream()
+                                          .map(nl.lambdatree.recipepicker.infrastructure.api.Recipe::fromDomain)
+                                          .toList();
+         var found = reactiveRecipeRepository.search(criteria, Integer.MAX_VALUE)
+                                             .map(nl.lambdatree.recipepicker.infrastructure.api.Recipe::fromDomain)
+                                             .collectList()
+                                             .block();
+         assertThat(found).as(criteria.toString()).isEqualTo(expected);
+      }
+   }
+
+   @Test
+   public void backpressureTest() {
+      // A subscriber which requests one recipe at a time gets them in order, and can stop halfway.
+      StepVerifier.create(reactiveRecipeRepository.search(RecipeSearchCriteria.builder().build(), Integer.MAX_VALUE),
+                          1)
+                  .assertNext(recipe -> assertThat(recipe.getId()).isEqualTo(curry.getId()))
+                  .thenRequest(1)
+                  .assertNext(recipe -> assertThat(recipe.getIngredients()).hasSize(3))
+                  .thenCancel()
+                  .verify();
+   }
+
+   private List<Long> searchIds(String uri) {
+      return get(uri).expectStatus().isOk()
+                     .returnResult(nl.lambdatree.recipepicker.infrastructure.api.RecipeSummary.class)
+                     .getResponseBody()
+                     .map(nl.lambdatree.recipepicker.infrastructure.api.RecipeSummary::getId)
+                     .collectList()
+                     .block();
+   }
+
+   private WebTestClient.ResponseSpec get(String uri) {
+      return webTestClient.get()
+                          .uri(uri)
+                          .accept(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_JSON)
+                          .headers(headers -> headers.setBasicAuth(recipePickerProperties.getUser(),
+                                                                   recipePickerProperties.getPassword()))
+                          .exchange();
+   }
+}
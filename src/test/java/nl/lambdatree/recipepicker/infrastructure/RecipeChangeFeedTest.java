@@ -0,0 +1,81 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import nl.lambdatree.recipepicker.BaseInfrastructureTest;
+import nl.lambdatree.recipepicker.FixtureFactory;
+import nl.lambdatree.recipepicker.domain.RecipeChangeLog;
+import nl.lambdatree.recipepicker.domain.RecipeChangedEvent;
+import nl.lambdatree.recipepicker.infrastructure.api.RecipeChanges;
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.RequestEntity;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecipeChangeFeedTest extends BaseInfrastructureTest {
+
+   @Autowired
+   private RecipeChangeLog recipeChangeLog;
+
+   @Test
+   public void shouldListChangesSince() {
+      var since = recipeChangeLog.getLastSeq();
+      var created = recipeService.create(FixtureFactory.spaghettiBolognese(mincedBeef, cannedTomatoes, onions));
+      recipeService.update(created.getId(), FixtureFactory.spaghettiBolognese(mincedBeef, cannedTomatoes));
+      recipeService.delete(curry.getId());
+
+      var changes = changes(since, 2, 0);
+      assertThat(changes.getChanges()).extracting(RecipeChanges.Change::getOperation, RecipeChanges.Change::getRecipeId)
+                                      .containsExactly(
+                                         Tuple.tuple(RecipeChangedEvent.Operation.CREATED,
+                                                                             created.getId()),
+                                         Tuple.tuple(RecipeChangedEvent.Operation.UPDATED,
+                                                                             created.getId()));
+      assertThat(changes.getLast()).isEqualTo(since + 2);
+
+      changes = changes(changes.getLast(), 2, 0);
+      assertThat(changes.getChanges()).extracting(RecipeChanges.Change::getOperation)
+                                      .containsExactly(RecipeChangedEvent.Operation.DELETED);
+
+      // Nothing new.
+      changes = changes(changes.getLast(), 2, 0);
+      assertThat(changes.getChanges()).isEmpty();
+      assertThat(changes.getLast()).isEqualTo(since + 3);
+   }
+
+   @Test
+   public void shouldWaitForTheNextChange() throws Exception {
+      var since = recipeChangeLog.getLastSeq();
+      var waiting = CompletableFuture.supplyAsync(() -> changes(since, 10, 20));
+
+      Thread.sleep(500); // Let the request start waiting.
+      var start = System.nanoTime();
+      recipeService.delete(curry.getId());
+
+      var changes = waiting.get(10, TimeUnit.SECONDS);
+      assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+      assertThat(changes.getChanges()).extracting(RecipeChanges.Change::getRecipeId)
+                                      .containsExactly(curry.getId());
+   }
+
+   private RecipeChanges changes(long since, int limit, int waitSeconds) {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes/changes")
+                                    .queryParam("since", since)
+                                    .queryParam("limit", limit)
+                                    .queryParam("waitSeconds", waitSeconds)
+                                    .build()
+                                    .toUri();
+      var request = new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri);
+      var response = restTemplate.exchange(request, RecipeChanges.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getBody()).isNotNull();
+      return response.getBody();
+   }
+}
@@ -1,26 +1,45 @@
 package nl.lambdatree.recipepicker.infrastructure;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import nl.lambdatree.recipepicker.BaseInfrastructureTest;
+import nl.lambdatree.recipepicker.FixtureFactory;
 import nl.lambdatree.recipepicker.domain.Ingredient;
 import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.RecipeSearchCriteria;
+import nl.lambdatree.recipepicker.infrastructure.api.ContinuationToken;
 import nl.lambdatree.recipepicker.infrastructure.api.ErrorCode;
 import nl.lambdatree.recipepicker.infrastructure.api.ErrorResponse;
+import nl.lambdatree.recipepicker.infrastructure.api.IngredientsPatch;
 import nl.lambdatree.recipepicker.infrastructure.api.Recipe;
+import nl.lambdatree.recipepicker.infrastructure.api.RecipeBatch;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class RecipeControllerTest extends BaseInfrastructureTest {
 
+   @Autowired
+   private ObjectMapper objectMapper;
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
    @Test
    public void wildCardSearchTest() {
       var uri = UriComponentsBuilder.fromPath("/v1/recipes")
@@ -53,6 +72,120 @@ public class RecipeControllerTest extends BaseInfrastructureTest {
       assertThat(response.getBody().stream()).containsExactly(Recipe.fromDomain(curry));
    }
 
+   @Test
+   public void pagedSearchTest() {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                    .queryParam("limit", 1)
+                                    .queryParam("sort", "-nofServings")
+                                    .build()
+                                    .toUri();
+      var request = new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri);
+      var response = restTemplate.exchange(request, new ParameterizedTypeReference<List<Recipe>>() {});
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getBody()).containsExactly(Recipe.fromDomain(curry));
+      var token = response.getHeaders().getFirst(ContinuationToken.HEADER);
+      assertThat(token).isNotNull();
+
+      var nextUri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                        .queryParam("limit", 1)
+                                        .queryParam("sort", "-nofServings")
+                                        .queryParam("continuationToken", token)
+                                        .build()
+                                        .toUri();
+      request = new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, nextUri);
+      response = restTemplate.exchange(request, new ParameterizedTypeReference<List<Recipe>>() {});
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getBody()).containsExactly(Recipe.fromDomain(spaghettiBolognese));
+      assertThat(response.getHeaders().getFirst(ContinuationToken.HEADER)).isNull();
+
+      // The token is only valid for the original sort order.
+      var otherSortUri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                             .queryParam("continuationToken", token)
+                                             .build()
+                                             .toUri();
+      request = new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, otherSortUri);
+      var error = restTemplate.exchange(request, ErrorResponse.class);
+      assertThat(error.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+   }
+
+   @Test
+   public void tamperedContinuationTokenTest() {
+      // Missing or null fields and values which don't match the sort order.
+      for (var payload : List.of("null",
+                                 "{\"sort\":\"-nofServings\"}",
+                                 "{\"sort\":\"-nofServings\",\"values\":[null],\"id\":1}",
+                                 "{\"values\":[\"4\"],\"id\":1}",
+                                 "{\"sort\":\"-nofServings\",\"values\":[\"x\"],\"id\":1}")) {
+         var token = Base64.getUrlEncoder().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+         var uri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                       .queryParam("sort", "-nofServings")
+                                       .queryParam("continuationToken", token)
+                                       .build()
+                                       .toUri();
+         var error = restTemplate.exchange(new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri),
+                                           ErrorResponse.class);
+         assertThat(error.getStatusCode()).as(payload).isEqualTo(HttpStatus.BAD_REQUEST);
+      }
+   }
+
+   @Test
+   public void serializeDomainRecipeTest() throws Exception {
+      // The search writes the domain recipes, which should give the json of the api recipes.
+      assertThat(objectMapper.readTree(objectMapper.writeValueAsString(curry)))
+         .isEqualTo(objectMapper.readTree(objectMapper.writeValueAsString(Recipe.fromDomain(curry))));
+      var unsaved = FixtureFactory.curry(chickPeas, cannedTomatoes, onions);
+      unsaved.setCategory(null);
+      assertThat(objectMapper.readTree(objectMapper.writeValueAsString(unsaved)))
+         .isEqualTo(objectMapper.readTree(objectMapper.writeValueAsString(Recipe.fromDomain(unsaved))));
+   }
+
+   @Test
+   public void exportTest() throws Exception {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                    .build()
+                                    .toUri();
+      var headers = requestHeaders();
+      headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+      var request = new RequestEntity<>(null, headers, HttpMethod.GET, uri);
+
+      var response = restTemplate.exchange(request, String.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getHeaders().getContentType()).isNotNull();
+      assertThat(response.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_NDJSON)).isTrue();
+      assertThat(response.getBody()).isNotNull();
+
+      var lines = response.getBody().split("\n");
+      assertThat(lines).hasSize(2);
+      assertThat(objectMapper.readValue(lines[0], Recipe.class)).isEqualTo(Recipe.fromDomain(curry));
+      assertThat(objectMapper.readValue(lines[1], Recipe.class)).isEqualTo(Recipe.fromDomain(spaghettiBolognese));
+
+      // Errors are still reported as json.
+      var overlapUri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                           .queryParam("includeIngredientIds", onions.getId())
+                                           .queryParam("excludeIngredientIds", onions.getId())
+                                           .build()
+                                           .toUri();
+      var error = restTemplate.exchange(new RequestEntity<>(null, headers, HttpMethod.GET, overlapUri),
+                                        ErrorResponse.class);
+      assertThat(error.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+      assertThat(error.getBody()).isNotNull();
+      assertThat(error.getBody().getErrorCode()).isEqualTo(ErrorCode.INVALID_PARAM);
+   }
+
+   @Test
+   public void searchWithUnknownIngredientTest() {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                    .queryParam("excludeIngredientIds", Long.MAX_VALUE)
+                                    .build()
+                                    .toUri();
+      var request = new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri);
+
+      var response = restTemplate.exchange(request, ErrorResponse.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+      assertThat(response.getBody()).isNotNull();
+      assertThat(response.getBody().getDetails()).contains("Unknown ingredient");
+   }
+
    @Test
    public void createRecipeTest() {
       var uri = UriComponentsBuilder.fromPath("/v1/recipes")
@@ -96,7 +229,7 @@ public class RecipeControllerTest extends BaseInfrastructureTest {
                                     .toUri();
 
       var unknown = Set.of(Ingredient.builder()
-                                     .id(42L)
+                                     .id(Long.MAX_VALUE)
                                      .name("unknown ingredient")
                                      .build());
       var recipe = Recipe.builder()
@@ -114,6 +247,148 @@ public class RecipeControllerTest extends BaseInfrastructureTest {
       assertThat(response.getBody().getDetails()).contains("constraint");
    }
 
+   @Test
+   public void relevanceSearchTest() {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                    .queryParam("text", "salted water")
+                                    .queryParam("textMode", "FULL_TEXT")
+                                    .queryParam("sort", "relevance")
+                                    .build()
+                                    .toUri();
+      var request = new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri);
+      var response = restTemplate.exchange(request, new ParameterizedTypeReference<List<Recipe>>() {
+      });
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getBody()).containsExactly(Recipe.fromDomain(spaghettiBolognese), Recipe.fromDomain(curry));
+      assertThat(response.getHeaders().get(ContinuationToken.HEADER)).isNull();
+
+      // A substring search has no relevance.
+      uri = UriComponentsBuilder.fromUri(uri)
+                                .replaceQueryParam("textMode", "SUBSTRING")
+                                .build()
+                                .toUri();
+      request = new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri);
+      var errorResponse = restTemplate.exchange(request, ErrorResponse.class);
+      assertThat(errorResponse.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+   }
+
+   @Test
+   public void fullTextWordLimitTest() {
+      var words = IntStream.rangeClosed(1, RecipeSearchCriteria.MAX_TEXT_WORDS)
+                           .mapToObj(Integer::toString)
+                           .collect(Collectors.joining(" "));
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                    .queryParam("text", words)
+                                    .queryParam("textMode", "FULL_TEXT")
+                                    .build()
+                                    .toUri();
+      var response = restTemplate.exchange(new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri),
+                                           new ParameterizedTypeReference<List<Recipe>>() {
+                                           });
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getBody()).isEmpty();
+
+      // Repeated words only count once, one more distinct word is rejected.
+      var tooManyUri = UriComponentsBuilder.fromUri(uri)
+                                           .replaceQueryParam("text", words + " 1 " + words + " and")
+                                           .build()
+                                           .toUri();
+      var error = restTemplate.exchange(new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, tooManyUri),
+                                        ErrorResponse.class);
+      assertThat(error.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+      assertThat(error.getBody()).isNotNull();
+      assertThat(error.getBody().getErrorCode()).isEqualTo(ErrorCode.INVALID_PARAM);
+      assertThat(error.getBody().getDetails()).contains("at most " + RecipeSearchCriteria.MAX_TEXT_WORDS);
+   }
+
+   @Test
+   public void batchGetTest() {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                    .queryParam("ids", curry.getId(), Long.MAX_VALUE, spaghettiBolognese.getId(),
+                                                curry.getId())
+                                    .build()
+                                    .toUri();
+      var request = new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri);
+      var response = restTemplate.exchange(request, RecipeBatch.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getBody()).isNotNull();
+      // In the order of the request, without duplicates.
+      assertThat(response.getBody().getRecipes()).containsExactly(Recipe.fromDomain(curry),
+                                                                  Recipe.fromDomain(spaghettiBolognese));
+      assertThat(response.getBody().getMissingIds()).containsExactly(Long.MAX_VALUE);
+   }
+
+   @Test
+   public void conditionalRequestTest() {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes/{id}")
+                                    .build(curry.getId());
+      var response = restTemplate.exchange(new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri),
+                                           Recipe.class);
+      var eTag = response.getHeaders().getETag();
+      assertThat(eTag).isNotNull();
+
+      // Not modified, which doesn't count as a cache hit or miss.
+      var hits = cacheGets("hit");
+      var misses = cacheGets("miss");
+      var headers = requestHeaders();
+      headers.setIfNoneMatch(eTag);
+      response = restTemplate.exchange(new RequestEntity<>(null, headers, HttpMethod.GET, uri), Recipe.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+      assertThat(cacheGets("hit")).isEqualTo(hits);
+      assertThat(cacheGets("miss")).isEqualTo(misses);
+
+      // Only the first update based on the ETag succeeds.
+      var recipe = Recipe.fromDomain(curry);
+      recipe.setNofServings(3);
+      headers = requestHeaders();
+      headers.setIfMatch(eTag);
+      var update = new RequestEntity<>(recipe, headers, HttpMethod.PUT, uri);
+      assertThat(restTemplate.exchange(update, Void.class).getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+      var conflict = restTemplate.exchange(update, ErrorResponse.class);
+      assertThat(conflict.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+      assertThat(conflict.getBody()).isNotNull();
+      assertThat(conflict.getBody().getErrorCode()).isEqualTo(ErrorCode.VERSION_MISMATCH);
+
+      var delete = new RequestEntity<>(null, headers, HttpMethod.DELETE, uri);
+      assertThat(restTemplate.exchange(delete, ErrorResponse.class).getStatusCode())
+         .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+      // The old ETag doesn't match anymore.
+      headers = requestHeaders();
+      headers.setIfNoneMatch(eTag);
+      response = restTemplate.exchange(new RequestEntity<>(null, headers, HttpMethod.GET, uri), Recipe.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getBody()).isNotNull();
+      assertThat(response.getBody().getNofServings()).isEqualTo(3);
+      assertThat(response.getHeaders().getETag()).isNotEqualTo(eTag);
+   }
+
+   @Test
+   public void patchIngredientsTest() {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes/{id}/ingredients")
+                                    .build(curry.getId());
+      var patch = IngredientsPatch.builder()
+                                  .add(Set.of(milk.getId()))
+                                  .remove(Set.of(onions.getId()))
+                                  .build();
+      var response = restTemplate.exchange(new RequestEntity<>(patch, requestHeaders(), HttpMethod.PATCH, uri),
+                                           Recipe.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getHeaders().getETag()).isEqualTo("\"" + (curry.getVersion() + 1) + "\"");
+      assertThat(response.getBody()).isNotNull();
+      assertThat(response.getBody().getIngredients()).containsExactlyInAnyOrder(chickPeas, cannedTomatoes, milk);
+      assertThat(recipeRepository.findById(curry.getId()).orElseThrow().getIngredients())
+         .containsExactlyInAnyOrder(chickPeas, cannedTomatoes, milk);
+
+      // Removing all ingredients is rejected.
+      patch = IngredientsPatch.builder()
+                              .remove(Set.of(chickPeas.getId(), cannedTomatoes.getId(), milk.getId()))
+                              .build();
+      var rejected = restTemplate.exchange(new RequestEntity<>(patch, requestHeaders(), HttpMethod.PATCH, uri),
+                                           ErrorResponse.class);
+      assertThat(rejected.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+   }
+
    @Test
    public void updateRecipeTest() {
       var uri = UriComponentsBuilder.fromPath("/v1/recipes/{id}")
@@ -152,6 +427,29 @@ public class RecipeControllerTest extends BaseInfrastructureTest {
       assertThat(notFound.getBody().getErrorCode()).isEqualTo(ErrorCode.ENTITY_NOT_FOUND);
    }
 
+   @Test
+   public void cachedGetRecipeTest() {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes/{id}")
+                                    .build(curry.getId());
+      var hits = cacheGets("hit");
+      var misses = cacheGets("miss");
+
+      var request = new RequestEntity<>(null, requestHeaders(), HttpMethod.GET, uri);
+      assertThat(restTemplate.exchange(request, Recipe.class).getBody()).isEqualTo(Recipe.fromDomain(curry));
+      assertThat(restTemplate.exchange(request, Recipe.class).getBody()).isEqualTo(Recipe.fromDomain(curry));
+      assertThat(cacheGets("miss")).isEqualTo(misses + 1);
+      assertThat(cacheGets("hit")).isEqualTo(hits + 1);
+
+      // An update through the service invalidates the cached recipe.
+      curry.setName("Vegetable curry");
+      recipeService.update(curry.getId(), curry);
+      assertThat(restTemplate.exchange(request, Recipe.class).getBody()).isEqualTo(Recipe.fromDomain(curry));
+
+      recipeService.delete(curry.getId());
+      assertThat(restTemplate.exchange(request, ErrorResponse.class).getStatusCode())
+         .isEqualTo(HttpStatus.NOT_FOUND);
+   }
+
    @Test
    public void validationTest() {
       var uri = UriComponentsBuilder.fromPath("/v1/recipes")
@@ -172,6 +470,34 @@ public class RecipeControllerTest extends BaseInfrastructureTest {
       assertThat(response.getBody().getDetails()).contains("nofServings");
    }
 
+   @Test
+   public void searchMetricsTest() {
+      assertThat(search("curry")).hasSize(1);
+
+      var searches = meterRegistry.get("recipe.search")
+                                  .tag("kind", "recipes")
+                                  .tag("text", "full-text")
+                                  .tag("category", "false")
+                                  .timer();
+      assertThat(searches.count()).isPositive();
+      // The ids of the recipes, and the recipes with their ingredients.
+      var statements = meterRegistry.get("http.server.requests.statements")
+                                    .tag("method", "GET")
+                                    .tag("uri", "/v1/recipes")
+                                    .summary();
+      assertThat(statements.max()).isGreaterThanOrEqualTo(2);
+      // Only with the hibernate statistics enabled.
+      assertThat(meterRegistry.find("hibernate.query.plan.cache").meters()).isEmpty();
+   }
+
+   private double cacheGets(String result) {
+      return meterRegistry.get("cache.gets")
+                          .tag("cache", "recipes")
+                          .tag("result", result)
+                          .functionCounter()
+                          .count();
+   }
+
    private List<Recipe> search(String text) {
       var uri = UriComponentsBuilder.fromPath("/v1/recipes")
                                     .queryParam("text", text)
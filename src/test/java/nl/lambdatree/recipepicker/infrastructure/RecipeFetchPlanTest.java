@@ -0,0 +1,108 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import nl.lambdatree.recipepicker.BaseInfrastructureTest;
+import nl.lambdatree.recipepicker.FixtureFactory;
+import nl.lambdatree.recipepicker.domain.Ingredient;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.RecipePageRequest;
+import nl.lambdatree.recipepicker.domain.RecipeSearchCriteria;
+import nl.lambdatree.recipepicker.domain.TextMode;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Check that the number of statements of a search doesn't grow with the number of results.
+ */
+@TestPropertySource(properties = {
+   "spring.jpa.properties.hibernate.generate_statistics=true",
+   "spring.datasource.url=jdbc:h2:mem:fetch-plan-test"
+})
+public class RecipeFetchPlanTest extends BaseInfrastructureTest {
+
+   private static final int NOF_RECIPES = 1000;
+
+   @Autowired
+   private EntityManagerFactory entityManagerFactory;
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   private Statistics statistics;
+
+   @BeforeEach
+   public void createRecipes() {
+      recipeRepository.saveAll(IntStream.range(0, NOF_RECIPES)
+                                        .mapToObj(i -> FixtureFactory.spaghettiBolognese(milk, flour))
+                                        .toList());
+      statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+   }
+
+   @Test
+   public void testSearchStatementCount() {
+      var unlimited = RecipePageRequest.unlimited();
+      var small = countStatements(() -> assertThat(
+         recipeService.search("", RecipeCategory.ALL, 0, Set.of(chickPeas), Set.of(), unlimited).getRecipes())
+         .hasSize(1));
+      var large = countStatements(() -> assertThat(
+         recipeService.search("", RecipeCategory.ALL, 0, Set.of(milk), Set.of(), unlimited).getRecipes())
+         .hasSize(NOF_RECIPES)
+         .allMatch(recipe -> recipe.getIngredients().size() == 2));
+
+      // One statement for the ids, one for the recipes with their ingredients.
+      assertThat(large).isEqualTo(2).isEqualTo(small);
+   }
+
+   @Test
+   public void testSummaryStatementCount() {
+      var count = countStatements(() -> assertThat(
+         recipeService.searchSummaries("", RecipeCategory.ALL, 0, Set.of(milk), Set.of(),
+                                       RecipePageRequest.unlimited()).getRecipes())
+         .hasSize(NOF_RECIPES));
+      assertThat(count).isEqualTo(1);
+   }
+
+   @Test
+   public void testQueryPlanCache() {
+      var pageRequest = RecipePageRequest.builder().limit(10).build();
+      recipeService.search(criteria("boil salted water", milk, flour, onions), pageRequest);
+      statistics.clear();
+
+      // A different number of words and ingredients, but the same padded shape.
+      var recipes = recipeService.search(criteria("boil salted water meat", milk, flour, onions, chickPeas),
+                                         pageRequest);
+      assertThat(recipes.getRecipes()).isEmpty();
+      assertThat(statistics.getQueryPlanCacheMissCount()).isZero();
+      assertThat(statistics.getQueryPlanCacheHitCount()).isPositive();
+      assertThat(meterRegistry.get("hibernate.query.plan.cache").tag("result", "hit").functionCounter().count())
+         .isPositive();
+   }
+
+   private static RecipeSearchCriteria criteria(String text, Ingredient... includeIngredients) {
+      return RecipeSearchCriteria.builder()
+                                 .text(text)
+                                 .textMode(TextMode.FULL_TEXT)
+                                 .includeIngredientIds(Arrays.stream(includeIngredients)
+                                                             .map(Ingredient::getId)
+                                                             .collect(Collectors.toSet()))
+                                 .build();
+   }
+
+   private long countStatements(Runnable search) {
+      statistics.clear();
+      search.run();
+      return statistics.getPrepareStatementCount();
+   }
+}
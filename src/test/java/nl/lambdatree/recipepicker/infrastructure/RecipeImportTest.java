@@ -0,0 +1,137 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import nl.lambdatree.recipepicker.BaseInfrastructureTest;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.RecipeChange;
+import nl.lambdatree.recipepicker.domain.RecipeChangeLog;
+import nl.lambdatree.recipepicker.domain.RecipeChangedEvent;
+import nl.lambdatree.recipepicker.domain.RecipePageRequest;
+import nl.lambdatree.recipepicker.domain.RecipeSearchCriteria;
+import nl.lambdatree.recipepicker.domain.TextMode;
+import nl.lambdatree.recipepicker.infrastructure.api.ImportReport;
+import nl.lambdatree.recipepicker.infrastructure.api.Recipe;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+public class RecipeImportTest extends BaseInfrastructureTest {
+
+   private static final int NOF_RECIPES = 5000;
+
+   @Autowired
+   private ObjectMapper objectMapper;
+
+   @Autowired
+   private RecipeChangeLog recipeChangeLog;
+
+   @Test
+   public void shouldImportNewlineDelimitedRecipes() {
+      var body = IntStream.range(0, NOF_RECIPES)
+                          .mapToObj(i -> recipe("Imported recipe " + i, 4))
+                          .map(this::toJson)
+                          .collect(Collectors.joining("\n"));
+
+      var since = recipeChangeLog.getLastSeq();
+      var start = System.nanoTime();
+      var report = importRecipes(body, MediaType.APPLICATION_NDJSON);
+      var seconds = (System.nanoTime() - start) / 1e9;
+      log.info("Imported {} recipes in {} s, {} recipes/s", NOF_RECIPES, seconds, Math.round(NOF_RECIPES / seconds));
+
+      assertThat(report.getCreated()).isEqualTo(NOF_RECIPES);
+      assertThat(report.getRejected()).isZero();
+      assertThat(report.getResults()).extracting(ImportReport.Result::getIndex)
+                                     .containsExactlyElementsOf(IntStream.range(0, NOF_RECIPES).boxed().toList());
+
+      // Every recipe is in the change log, in the order of the import.
+      assertThat(recipeChangeLog.getLastSeq()).isEqualTo(since + NOF_RECIPES);
+      assertThat(recipeChangeLog.findAfter(since, NOF_RECIPES))
+         .allMatch(change -> change.getOperation() == RecipeChangedEvent.Operation.CREATED)
+         .extracting(RecipeChange::getRecipeId)
+         .containsExactlyElementsOf(report.getResults().stream().map(ImportReport.Result::getId).toList());
+
+      // The imported recipes are indexed like created ones.
+      var criteria = RecipeSearchCriteria.builder()
+                                         .text("imported 4321")
+                                         .textMode(TextMode.FULL_TEXT)
+                                         .build();
+      var found = recipeService.search(criteria, RecipePageRequest.unlimited()).getRecipes();
+      assertThat(found).singleElement()
+                       .satisfies(recipe -> {
+                          assertThat(recipe.getId()).isEqualTo(report.getResults().get(4321).getId());
+                          assertThat(recipe.getIngredients()).containsExactlyInAnyOrder(milk, flour);
+                       });
+   }
+
+   @Test
+   public void shouldReportEveryRecord() {
+      var unknownIngredient = recipe("Unknown ingredient", 4);
+      unknownIngredient.getIngredients().iterator().next().setId(Long.MAX_VALUE);
+      var body = "[" + String.join(",",
+                                   toJson(recipe("Pancakes", 4)),
+                                   toJson(recipe("Too many servings", 42)),
+                                   toJson(unknownIngredient),
+                                   "{\"name\": \"Soup\", \"category\": \"SOUP\"}",
+                                   toJson(recipe("Waffles", 2))) + "]";
+
+      var report = importRecipes(body, MediaType.APPLICATION_JSON);
+
+      assertThat(report.getCreated()).isEqualTo(2);
+      assertThat(report.getRejected()).isEqualTo(3);
+      assertThat(report.getResults()).extracting(ImportReport.Result::getStatus)
+                                     .containsExactly(ImportReport.Status.CREATED,
+                                                      ImportReport.Status.INVALID,
+                                                      ImportReport.Status.INVALID,
+                                                      ImportReport.Status.INVALID,
+                                                      ImportReport.Status.CREATED);
+      assertThat(report.getResults().get(1).getMessage()).contains("nofServings");
+      assertThat(report.getResults().get(2).getMessage()).contains("Unknown ingredient id");
+      var waffles = recipeRepository.findById(report.getResults().get(4).getId()).orElseThrow();
+      assertThat(waffles.getName()).isEqualTo("Waffles");
+   }
+
+   private Recipe recipe(String name, int nofServings) {
+      return Recipe.builder()
+                   .name(name)
+                   .instructions("Mix flour and milk, bake in a hot pan ...")
+                   .category(RecipeCategory.VEGETARIAN)
+                   .nofServings(nofServings)
+                   .ingredients(Set.of(new nl.lambdatree.recipepicker.domain.Ingredient(milk.getId(), null),
+                                       new nl.lambdatree.recipepicker.domain.Ingredient(flour.getId(), null)))
+                   .build();
+   }
+
+   private String toJson(Recipe recipe) {
+      try {
+         return objectMapper.writeValueAsString(recipe);
+      } catch (Exception e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   private ImportReport importRecipes(String body, MediaType contentType) {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes/import")
+                                    .build()
+                                    .toUri();
+      var headers = requestHeaders();
+      headers.set(HttpHeaders.CONTENT_TYPE, contentType.toString());
+      var request = new RequestEntity<>(body, headers, HttpMethod.POST, uri);
+      var response = restTemplate.exchange(request, ImportReport.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getBody()).isNotNull();
+      return response.getBody();
+   }
+}
@@ -1,9 +1,18 @@
 package nl.lambdatree.recipepicker.infrastructure;
 
 import nl.lambdatree.recipepicker.BaseInfrastructureTest;
+import nl.lambdatree.recipepicker.domain.Recipe;
 import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.RecipePageRequest;
+import nl.lambdatree.recipepicker.domain.RecipeSearchCriteria;
+import nl.lambdatree.recipepicker.domain.RecipeSortKey;
+import nl.lambdatree.recipepicker.domain.RecipeSortOrder;
+import nl.lambdatree.recipepicker.domain.RecipeSummary;
+import nl.lambdatree.recipepicker.domain.TextMode;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -27,6 +36,59 @@ public class RecipeServiceSearchTest extends BaseInfrastructureTest {
       assertThat(result).containsExactly(curry);
    }
 
+   @Test
+   public void testRecipeFullTextSearch() {
+      // Words match on their stem, in any order.
+      var result = search(fullText("boiling"), RecipePageRequest.unlimited());
+      assertThat(result).containsExactly(spaghettiBolognese);
+
+      result = search(fullText("onion soaking"), RecipePageRequest.unlimited());
+      assertThat(result).containsExactly(curry);
+
+      // Every word should match.
+      result = search(fullText("boiling onions"), RecipePageRequest.unlimited());
+      assertThat(result).isEmpty();
+
+      // Unlike a substring search, part of a word doesn't match.
+      result = search(fullText("oil"), RecipePageRequest.unlimited());
+      assertThat(result).isEmpty();
+   }
+
+   @Test
+   public void testRecipeRelevanceSearch() {
+      var caramel = recipeService.create(Recipe.builder()
+                                               .name("Salted Caramel")
+                                               .instructions("Melt the sugar, stir in the butter ...")
+                                               .category(RecipeCategory.VEGETARIAN)
+                                               .nofServings(8)
+                                               .ingredients(Set.of(milk))
+                                               .build());
+      var pageRequest = RecipePageRequest.builder()
+                                         .limit(2)
+                                         .byRelevance(true)
+                                         .build();
+
+      // A match in the name is more relevant, equally relevant recipes are ordered by id.
+      var result = search(fullText("salted"), pageRequest);
+      assertThat(result).containsExactly(caramel, spaghettiBolognese);
+
+      var summaries = recipeService.searchSummaries(fullText("salted"), pageRequest);
+      assertThat(summaries.getRecipes()).containsExactly(RecipeSummary.of(caramel),
+                                                         RecipeSummary.of(spaghettiBolognese));
+      assertThat(summaries.getNext()).isNull();
+   }
+
+   private List<Recipe> search(RecipeSearchCriteria criteria, RecipePageRequest pageRequest) {
+      return recipeService.search(criteria, pageRequest).getRecipes();
+   }
+
+   private static RecipeSearchCriteria fullText(String text) {
+      return RecipeSearchCriteria.builder()
+                                 .text(text)
+                                 .textMode(TextMode.FULL_TEXT)
+                                 .build();
+   }
+
    @Test
    public void testRecipeCategorySearch() {
       var result = recipeService.search("", RecipeCategory.ALL, 0,
@@ -66,4 +128,78 @@ public class RecipeServiceSearchTest extends BaseInfrastructureTest {
       result = recipeService.search("", RecipeCategory.ALL, 0, Set.of(), Set.of(mincedBeef, chickPeas));
       assertThat(result).isEmpty();
    }
+
+   @Test
+   public void testRecipePaging() {
+      var pageRequest = RecipePageRequest.builder()
+                                         .limit(1)
+                                         .build();
+      var page = recipeService.search("", RecipeCategory.ALL, 0, Set.of(), Set.of(), pageRequest);
+      assertThat(page.getRecipes()).containsExactly(curry);
+      assertThat(page.getNext()).isNotNull();
+
+      pageRequest = RecipePageRequest.builder()
+                                     .limit(1)
+                                     .after(page.getNext())
+                                     .build();
+      page = recipeService.search("", RecipeCategory.ALL, 0, Set.of(), Set.of(), pageRequest);
+      assertThat(page.getRecipes()).containsExactly(spaghettiBolognese);
+      assertThat(page.getNext()).isNull();
+   }
+
+   @Test
+   public void testRecipeSorting() {
+      var byServings = List.of(RecipeSortOrder.asc(RecipeSortKey.NOF_SERVINGS));
+      var pageRequest = RecipePageRequest.builder()
+                                         .sort(byServings)
+                                         .build();
+      var page = recipeService.search("", RecipeCategory.ALL, 0, Set.of(), Set.of(), pageRequest);
+      assertThat(page.getRecipes()).containsExactly(spaghettiBolognese, curry);
+
+      var byCategoryDescending = List.of(RecipeSortOrder.desc(RecipeSortKey.CATEGORY));
+      pageRequest = RecipePageRequest.builder()
+                                     .limit(1)
+                                     .sort(byCategoryDescending)
+                                     .build();
+      page = recipeService.search("", RecipeCategory.ALL, 0, Set.of(), Set.of(), pageRequest);
+      assertThat(page.getRecipes()).containsExactly(curry);
+
+      pageRequest = RecipePageRequest.builder()
+                                     .limit(1)
+                                     .sort(byCategoryDescending)
+                                     .after(page.getNext())
+                                     .build();
+      page = recipeService.search("", RecipeCategory.ALL, 0, Set.of(), Set.of(), pageRequest);
+      assertThat(page.getRecipes()).containsExactly(spaghettiBolognese);
+      assertThat(page.getNext()).isNull();
+   }
+
+   @Test
+   public void testRecipeSummarySearch() {
+      var pageRequest = RecipePageRequest.builder()
+                                         .limit(1)
+                                         .build();
+      var page = recipeService.searchSummaries("", RecipeCategory.ALL, 0, Set.of(cannedTomatoes), Set.of(),
+                                               pageRequest);
+      assertThat(page.getRecipes()).containsExactly(RecipeSummary.of(curry));
+
+      pageRequest = pageRequest.toBuilder()
+                               .after(page.getNext())
+                               .build();
+      page = recipeService.searchSummaries("", RecipeCategory.ALL, 0, Set.of(cannedTomatoes), Set.of(), pageRequest);
+      assertThat(page.getRecipes()).containsExactly(RecipeSummary.of(spaghettiBolognese));
+      assertThat(page.getNext()).isNull();
+   }
+
+   @Test
+   public void testRecipeScrolling() {
+      // Only collect the ids, scrolled recipes are detached and may not have their ingredients loaded.
+      var result = new ArrayList<Long>();
+      recipeService.scroll("", RecipeCategory.ALL, 0, Set.of(), Set.of(mincedBeef), r -> result.add(r.getId()));
+      assertThat(result).containsExactly(curry.getId());
+
+      result.clear();
+      recipeService.scroll("", RecipeCategory.ALL, 0, Set.of(), Set.of(), r -> result.add(r.getId()));
+      assertThat(result).containsExactly(curry.getId(), spaghettiBolognese.getId());
+   }
 }
@@ -0,0 +1,119 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import nl.lambdatree.recipepicker.BaseInfrastructureTest;
+import nl.lambdatree.recipepicker.FixtureFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Check the number of jdbc statements of a recipe update, which shouldn't read the recipe before writing it.
+ */
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:update-statement-test")
+public class RecipeUpdateStatementTest extends BaseInfrastructureTest {
+
+   private static final Set<String> STATEMENT_METHODS = Set.of("prepareStatement", "createStatement", "prepareCall");
+   private static final AtomicInteger nofStatements = new AtomicInteger();
+
+   @TestConfiguration
+   static class CountingConfiguration {
+
+      @Bean
+      public static BeanPostProcessor countingDataSourcePostProcessor() {
+         return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+               return bean instanceof DataSource dataSource ? new CountingDataSource(dataSource) : bean;
+            }
+         };
+      }
+   }
+
+   @Test
+   public void testUpdateStatementCount() {
+      var recipe = FixtureFactory.spaghettiBolognese(mincedBeef, cannedTomatoes, onions);
+      recipe.setNofServings(spaghettiBolognese.getNofServings() + 1);
+
+      var count = countStatements(() -> recipeService.update(spaghettiBolognese.getId(), recipe,
+                                                             spaghettiBolognese.getVersion()));
+
+      // Update of the recipe row, select of its ingredients and terms, nothing to write for those.
+      // Update, select and insert of the change log, see RecipeChangeLog.
+      assertThat(count).isEqualTo(6);
+      // The new version is read with the ingredients, for the change event.
+      assertThat(recipe.getVersion()).isEqualTo(spaghettiBolognese.getVersion() + 1);
+      assertThat(recipeRepository.findById(spaghettiBolognese.getId()).orElseThrow())
+         .satisfies(updated -> assertThat(updated.getNofServings()).isEqualTo(recipe.getNofServings()))
+         .satisfies(updated -> assertThat(updated.getVersion()).isEqualTo(spaghettiBolognese.getVersion() + 1));
+   }
+
+   @Test
+   public void testUpdateIngredientsStatementCount() {
+      var recipe = FixtureFactory.spaghettiBolognese(mincedBeef, cannedTomatoes, milk);
+
+      var count = countStatements(() -> recipeService.update(spaghettiBolognese.getId(), recipe, null));
+
+      // As above, with a delete of the removed and an insert of the added ingredient.
+      assertThat(count).isEqualTo(8);
+      assertThat(recipeRepository.findById(spaghettiBolognese.getId()).orElseThrow().getIngredients())
+         .isEqualTo(Set.of(mincedBeef, cannedTomatoes, milk));
+   }
+
+   @Test
+   public void testPatchIngredientsStatementCount() {
+      var count = countStatements(() -> recipeService.patchIngredients(spaghettiBolognese.getId(), Set.of(milk),
+                                                                       Set.of(onions), null));
+
+      // Update of the version, select, delete and insert of the ingredients, select of the patched recipe for the
+      // change event and the change log statements.
+      assertThat(count).isEqualTo(8);
+      assertThat(recipeRepository.findById(spaghettiBolognese.getId()).orElseThrow().getIngredients())
+         .isEqualTo(Set.of(mincedBeef, cannedTomatoes, milk));
+   }
+
+   private static int countStatements(Runnable update) {
+      nofStatements.set(0);
+      update.run();
+      return nofStatements.get();
+   }
+
+   // Counts the statements created on its connections.
+   private static class CountingDataSource extends DelegatingDataSource {
+
+      CountingDataSource(DataSource dataSource) {
+         super(dataSource);
+      }
+
+      @Override
+      public Connection getConnection() throws SQLException {
+         var connection = super.getConnection();
+         return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                                                    (proxy, method, args) -> invoke(connection, method, args));
+      }
+
+      private static Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+         if (STATEMENT_METHODS.contains(method.getName())) {
+            nofStatements.incrementAndGet();
+         }
+         try {
+            return method.invoke(connection, args);
+         } catch (InvocationTargetException e) {
+            throw e.getCause();
+         }
+      }
+   }
+}
@@ -0,0 +1,178 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import nl.lambdatree.recipepicker.BaseInfrastructureTest;
+import nl.lambdatree.recipepicker.domain.Recipe;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.infrastructure.configuration.ReadYourWritesFilter;
+import nl.lambdatree.recipepicker.infrastructure.configuration.ReplicaSet;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.RequestEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Route the read only requests to a replica. The replica is a database of its own which isn't replicated, so it only
+ * has the recipe inserted by the test, and its heartbeat is copied from the primary database by the test.
+ */
+@TestPropertySource(properties = {
+   "spring.datasource.url=jdbc:h2:mem:replica-routing-test",
+   "recipe-picker.replicas.enabled=true",
+   "recipe-picker.replicas.urls[0]=" + ReplicaRoutingTest.REPLICA_URL,
+   // The test checks the replicas itself.
+   "recipe-picker.replicas.check-interval=1h",
+   "recipe-picker.replicas.max-lag=5s"
+})
+public class ReplicaRoutingTest extends BaseInfrastructureTest {
+
+   static final String REPLICA_URL = "jdbc:h2:mem:replica-routing-test-replica;DB_CLOSE_DELAY=-1";
+
+   @Autowired
+   private ReplicaSet replicaSet;
+
+   @Autowired
+   private JdbcTemplate jdbcTemplate;
+
+   @Autowired
+   private PlatformTransactionManager transactionManager;
+
+   private JdbcTemplate replicaJdbc;
+
+   @BeforeEach
+   public void fillReplica() {
+      var replica = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+      Flyway.configure()
+            .dataSource(replica)
+            .locations("classpath:db/migration")
+            .load()
+            .migrate();
+      replicaJdbc = new JdbcTemplate(replica);
+      replicaJdbc.update("delete from recipes");
+      replicaJdbc.update("delete from ingredients");
+      replicaJdbc.update("insert into ingredients (id, name) values (1, 'Lentils')");
+      replicaJdbc.update("insert into recipes (id, name, instructions, category, nof_servings) " +
+                            "values (1, 'Lentil soup', 'Simmer the lentils.', 1, 4)");
+      replicaJdbc.update("insert into recipe_ingredient (recipe, ingredient) values (1, 1)");
+   }
+
+   @Test
+   public void testReadsUseTheReplica() {
+      catchUp();
+      assertThat(searchNames()).containsExactly("Lentil soup");
+   }
+
+   @Test
+   public void testReadsUseThePrimaryWhenTheReplicaLags() {
+      catchUp();
+      replicaJdbc.update("update replica_heartbeat set beat_at = dateadd('MINUTE', -1, beat_at)");
+      replicaSet.checkReplicas();
+      assertThat(searchNames()).containsExactly("Curry", "Spaghetti Bolognese");
+
+      catchUp();
+      assertThat(searchNames()).containsExactly("Lentil soup");
+   }
+
+   @Test
+   public void testReadsFollowTheWrites() {
+      catchUp();
+      recipeService.create(Recipe.builder()
+                                 .name("Omelette")
+                                 .instructions("Beat the eggs.")
+                                 .category(RecipeCategory.VEGETARIAN)
+                                 .nofServings(1)
+                                 .ingredients(Set.of(onions))
+                                 .build());
+      // The replica doesn't have the next beat after the change yet.
+      replicateHeartbeat();
+      assertThat(searchNames()).containsExactly("Curry", "Omelette", "Spaghetti Bolognese");
+
+      catchUp();
+      assertThat(searchNames()).containsExactly("Lentil soup");
+   }
+
+   @Test
+   public void testTransactionsWithoutChangesDontWaitForTheReplicas() {
+      catchUp();
+      new TransactionTemplate(transactionManager).executeWithoutResult(
+         status -> assertThat(jdbcTemplate.queryForObject("select count(*) from recipes", Long.class)).isEqualTo(2));
+      assertThat(searchNames()).containsExactly("Lentil soup");
+   }
+
+   @Test
+   public void testClientsReadTheirWrites() {
+      catchUp();
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes")
+                                    .build()
+                                    .toUri();
+      var omelette = Recipe.builder()
+                           .name("Omelette")
+                           .instructions("Beat the eggs.")
+                           .category(RecipeCategory.VEGETARIAN)
+                           .nofServings(1)
+                           .ingredients(Set.of(onions))
+                           .build();
+      var response = restTemplate.exchange(new RequestEntity<>(omelette, requestHeaders(), HttpMethod.POST, uri),
+                                           Void.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+      var cookie = response.getHeaders().getFirst(HttpHeaders.SET_COOKIE);
+      assertThat(cookie).startsWith(ReadYourWritesFilter.COOKIE + "=");
+
+      // The client waits for the beat after its change on any instance, the others only on this one.
+      catchUp();
+      assertThat(searchNames()).containsExactly("Lentil soup");
+      var beat = jdbcTemplate.queryForObject("select beat from replica_heartbeat", Long.class);
+      var headers = requestHeaders();
+      headers.add(HttpHeaders.COOKIE, ReadYourWritesFilter.COOKIE + "=" + (beat + 2));
+      assertThat(searchNames(headers)).containsExactly("Curry", "Omelette", "Spaghetti Bolognese");
+   }
+
+   @Test
+   public void testBeatsBeyondAChangeAreIgnored() {
+      catchUp();
+      var headers = requestHeaders();
+      headers.add(HttpHeaders.COOKIE, ReadYourWritesFilter.COOKIE + "=" + Long.MAX_VALUE);
+      assertThat(searchNames(headers)).containsExactly("Lentil soup");
+   }
+
+   // The replica has the beat after the next one of the primary database, so it has all the changes before it.
+   private void catchUp() {
+      for (int i = 0; i < 3; i++) {
+         replicateHeartbeat();
+      }
+   }
+
+   private void replicateHeartbeat() {
+      var beat = jdbcTemplate.queryForMap("select beat, beat_at from replica_heartbeat");
+      replicaJdbc.update("update replica_heartbeat set beat = ?, beat_at = ?", beat.get("beat"), beat.get("beat_at"));
+      replicaSet.checkReplicas();
+   }
+
+   private List<String> searchNames() {
+      return searchNames(requestHeaders());
+   }
+
+   private List<String> searchNames(HttpHeaders headers) {
+      var uri = UriComponentsBuilder.fromPath("/v1/recipes/summaries")
+                                    .build()
+                                    .toUri();
+      var response = restTemplate.exchange(new RequestEntity<>(null, headers, HttpMethod.GET, uri), JsonNode.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getBody()).isNotNull();
+      return response.getBody().findValuesAsText("name");
+   }
+}
@@ -0,0 +1,38 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import nl.lambdatree.recipepicker.BaseInfrastructureTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Check that the shapes of the search queries (see JpqlRecipeSearchEngine) use the indexes of the schema.
+ */
+public class SchemaQueryPlanTest extends BaseInfrastructureTest {
+
+   @Autowired
+   private JdbcTemplate jdbcTemplate;
+
+   @Test
+   public void testSearchIndexes() {
+      assertThat(explain("select id from recipes where category = 1 and nof_servings = 4 order by name, id"))
+         .contains("RECIPES_CATEGORY");
+      // H2 doesn't report that the rows of a single category are in name / id order, a database server uses that.
+      assertThat(explain("select id from recipes where category = 1 order by name, id"))
+         .contains("RECIPES_CATEGORY");
+      assertThat(explain("select id from recipes where nof_servings = 4 order by name, id"))
+         .contains("RECIPES_SERVINGS");
+      assertThat(explain("select id from recipes where name > 'A' or (name = 'A' and id > 1) order by name, id"))
+         .contains("RECIPES_NAME");
+      assertThat(explain("select recipe from recipe_ingredient where ingredient in (1, 2)"))
+         .contains("RECIPE_INGREDIENT_INGREDIENT");
+      assertThat(explain("select count(*) from recipe_ingredient where recipe = 1 and ingredient in (1, 2)"))
+         .contains("PRIMARY_KEY"); // H2 names the index of a primary key itself.
+   }
+
+   private String explain(String query) {
+      return jdbcTemplate.queryForObject("explain " + query, String.class);
+   }
+}
@@ -0,0 +1,163 @@
+package nl.lambdatree.recipepicker.infrastructure;
+
+import nl.lambdatree.recipepicker.FixtureFactory;
+import nl.lambdatree.recipepicker.domain.Recipe;
+import nl.lambdatree.recipepicker.domain.RecipeCategory;
+import nl.lambdatree.recipepicker.domain.RecipeChangedEvent;
+import nl.lambdatree.recipepicker.domain.RecipePageRequest;
+import nl.lambdatree.recipepicker.domain.RecipeSearchCriteria;
+import nl.lambdatree.recipepicker.domain.RecipeSearchEngine;
+import nl.lambdatree.recipepicker.domain.RecipeSortKey;
+import nl.lambdatree.recipepicker.domain.RecipeSortOrder;
+import nl.lambdatree.recipepicker.domain.RecipeSummary;
+import nl.lambdatree.recipepicker.domain.ShardedRecipeSearchEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Run the search tests against the sharded search engine, which should give identical results. The two fixture
+ * recipes end up in different shards.
+ */
+@TestPropertySource(properties = {
+   "recipe-picker.search.engine=sharded",
+   "recipe-picker.search.shards.count=3",
+   "recipe-picker.search.shards.url=jdbc:h2:mem:sharded-search-test-%d",
+   "spring.datasource.url=jdbc:h2:mem:sharded-search-test"
+})
+public class ShardedRecipeServiceSearchTest extends RecipeServiceSearchTest {
+
+   @Autowired
+   private RecipeSearchEngine recipeSearchEngine;
+
+   @Value("${recipe-picker.search.shards.url}")
+   private String shardUrl;
+
+   @Value("${recipe-picker.search.shards.count}")
+   private int nofShards;
+
+   @BeforeEach
+   public void rebuildShards() {
+      // The fixtures are saved using the repositories directly, bypassing the events of the RecipeService.
+      assertThat(recipeSearchEngine).isInstanceOf(ShardedRecipeSearchEngine.class);
+      recipeSearchEngine.rebuild();
+   }
+
+   @Test
+   public void testPagingAcrossShards() {
+      var names = List.of("Omelette", "Pancakes", "Apple pie", "Waffles", "Crepes", "Bread", "Muffins", "Scones");
+      for (int i = 0; i < names.size(); i++) {
+         recipeService.create(Recipe.builder()
+                                    .name(names.get(i))
+                                    .instructions("Mix milk and flour ...")
+                                    .category(RecipeCategory.values()[i % RecipeCategory.values().length])
+                                    .nofServings(1 + i % 3)
+                                    .ingredients(Set.of(milk, flour))
+                                    .build());
+      }
+      var criteria = RecipeSearchCriteria.builder().includeIngredientIds(Set.of(milk.getId())).build();
+      for (var sort : List.of(RecipePageRequest.DEFAULT_SORT,
+                              List.of(RecipeSortOrder.desc(RecipeSortKey.NOF_SERVINGS),
+                                      RecipeSortOrder.asc(RecipeSortKey.CATEGORY)))) {
+         var expected = recipeService.searchSummaries(criteria, RecipePageRequest.builder().sort(sort).build())
+                                     .getRecipes();
+         assertThat(expected).hasSize(names.size());
+
+         // The pages of three recipes merged from the shards should add up to the whole result, in the same order.
+         var pageRequest = RecipePageRequest.builder().limit(3).sort(sort).build();
+         var found = new ArrayList<RecipeSummary>();
+         do {
+            var page = recipeService.searchSummaries(criteria, pageRequest);
+            assertThat(page.getRecipes()).hasSizeLessThanOrEqualTo(3);
+            found.addAll(page.getRecipes());
+            pageRequest = page.getNext() == null ? null : pageRequest.toBuilder().after(page.getNext()).build();
+         } while (pageRequest != null);
+         assertThat(found).as(sort.toString()).isEqualTo(expected);
+      }
+   }
+
+   @Test
+   public void testShardsFollowServiceChanges() {
+      // Changing the category moves the curry to another shard when partitioning by category.
+      curry.setName("Zucchini curry");
+      curry.setCategory(RecipeCategory.VEGAN);
+      recipeService.update(curry.getId(), curry);
+      var result = recipeService.search("", RecipeCategory.VEGAN, 0, Set.of(), Set.of());
+      assertThat(result).extracting("id").containsExactly(curry.getId());
+
+      recipeService.delete(spaghettiBolognese.getId());
+      result = recipeService.search("", RecipeCategory.ALL, 0, Set.of(), Set.of());
+      assertThat(result).extracting("name").containsExactly("Zucchini curry");
+   }
+
+   @Test
+   public void testFailedShardChangeIsRetried() throws Exception {
+      // Inserting the terms fails on every shard, the change itself should still succeed.
+      alterShards("alter table recipe_terms rename to recipe_terms_offline");
+      var pancakes = recipeService.create(Recipe.builder()
+                                                .name("Pancakes")
+                                                .instructions("Mix milk and flour ...")
+                                                .category(RecipeCategory.VEGETARIAN)
+                                                .nofServings(2)
+                                                .ingredients(Set.of(milk, flour))
+                                                .build());
+      assertThat(recipeService.search("pancakes", RecipeCategory.ALL, 0, Set.of(), Set.of())).isEmpty();
+
+      // The next change brings the shards up to date.
+      alterShards("alter table recipe_terms_offline rename to recipe_terms");
+      recipeService.delete(spaghettiBolognese.getId());
+      assertThat(recipeService.search("pancakes", RecipeCategory.ALL, 0, Set.of(), Set.of()))
+         .extracting("id")
+         .containsExactly(pancakes.getId());
+      assertThat(recipeService.search("", RecipeCategory.ALL, 0, Set.of(), Set.of()))
+         .extracting("name")
+         .containsExactlyInAnyOrder("Curry", "Pancakes");
+   }
+
+   @Test
+   public void testChangesHandledOutOfOrderAreIgnored() {
+      // The second update is committed before the third, but handled after it. When partitioning by category, it
+      // would move the curry back to the shard of its old category.
+      var version = curry.getVersion();
+      recipeSearchEngine.onRecipeChanged(updatedCurry(version + 2, RecipeCategory.MEAT));
+      recipeSearchEngine.onRecipeChanged(updatedCurry(version + 1, RecipeCategory.VEGETARIAN));
+      assertThat(recipeService.search("curry", RecipeCategory.MEAT, 0, Set.of(), Set.of()))
+         .extracting("id")
+         .containsExactly(curry.getId());
+      assertThat(recipeService.search("curry", RecipeCategory.ALL, 0, Set.of(), Set.of()))
+         .extracting("id")
+         .containsExactly(curry.getId());
+
+      // The third update handled after the deletion doesn't bring the curry back.
+      recipeSearchEngine.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.Operation.DELETED, curry.getId(),
+                                                                version + 3, null));
+      recipeSearchEngine.onRecipeChanged(updatedCurry(version + 3, RecipeCategory.VEGAN));
+      assertThat(recipeService.search("curry", RecipeCategory.ALL, 0, Set.of(), Set.of())).isEmpty();
+   }
+
+   private RecipeChangedEvent updatedCurry(long version, RecipeCategory category) {
+      var updated = FixtureFactory.curry(chickPeas, cannedTomatoes, onions);
+      updated.setId(curry.getId());
+      updated.setCategory(category);
+      return new RecipeChangedEvent(RecipeChangedEvent.Operation.UPDATED, curry.getId(), version, updated);
+   }
+
+   private void alterShards(String sql) throws SQLException {
+      for (int i = 0; i < nofShards; i++) {
+         try (var connection = DriverManager.getConnection(String.format(shardUrl, i), "sa", "");
+              var statement = connection.createStatement()) {
+            statement.execute(sql);
+         }
+      }
+   }
+}